@@ -0,0 +1,83 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.test;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Guards against allocation creeping back into the steady state of {@link TestManager#periodic()},
+ * where every group has a test in progress and groups sharing a subsystem take turns. Garbage made
+ * there is collected while tests are being timed, so the bytes allocated on the benchmark thread are
+ * counted each iteration, and the run fails if a cycle allocates. The C1 fork runs without escape
+ * analysis, so allocations C2 would happen to optimize away still fail it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-XX:TieredStopAtLevel=1"})
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AllocationBenchmark {
+    /**
+     * How many bytes a cycle may allocate on average. Not quite zero, as the JVM may allocate on the
+     * benchmark thread now and then, but a single object per cycle is far over it.
+     */
+    private static final double ALLOWED_BYTES_PER_CYCLE = 0.5;
+
+    @Param({"10", "1000"})
+    public int groups;
+
+    private final com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private List<TestGroup> suite;
+    private long allocatedAtStart;
+    private long cycles;
+
+    @Setup(Level.Trial)
+    public void createSuite() {
+        suite = BenchmarkSuites.endlessGroups(groups, 3, Math.max(groups / 2, 1));
+        TestManager.setRunGroupsInParallel(true);
+    }
+
+    @Setup(Level.Iteration)
+    public void startSession() {
+        BenchmarkSuites.startSession(suite);
+        cycles = 0;
+        allocatedAtStart = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    @Benchmark
+    public void periodic() {
+        TestManager.periodic();
+        cycles++;
+    }
+
+    @TearDown(Level.Iteration)
+    public void checkAllocations() {
+        long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocatedAtStart;
+        double perCycle = cycles > 0 ? (double) allocated / cycles : 0;
+        System.out.println(String.format("%n%d bytes in %d cycles (%.4f per cycle)", allocated, cycles, perCycle));
+        if (perCycle > ALLOWED_BYTES_PER_CYCLE) {
+            throw new IllegalStateException(String.format(
+                "TestManager.periodic() allocated %.1f bytes per cycle, over the budget of %.1f", perCycle, ALLOWED_BYTES_PER_CYCLE));
+        }
+    }
+}
@@ -0,0 +1,135 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+import edu.wpi.first.wpilibj2.command.Subsystem;
+import frc.robot.test.TestManager.TestResults;
+import frc.robot.test.TestManager.TestSuccess;
+import frc.robot.test.networking.AnswerPolicy;
+import frc.robot.test.networking.TestClient;
+import frc.robot.test.networking.UnansweredQuestionException;
+
+/**
+ * Synthetic test suites for the benchmarks, and a way to run sessions of them with no client. A suite
+ * may be run by any number of sessions, one after another.
+ */
+public class BenchmarkSuites {
+    private static boolean loaded = false;
+
+    private BenchmarkSuites() {}
+
+    /** A client which selects every group and throws results away, so only the robot side is measured. */
+    public static class NullClient implements TestClient {
+        @Override
+        public Future<boolean[]> getChosenTestGroups(String[] testGroups) {
+            boolean[] chosen = new boolean[testGroups.length];
+            Arrays.fill(chosen, true);
+            return CompletableFuture.completedFuture(chosen);
+        }
+
+        @Override
+        public Future<Boolean> askQuestion(String question, String trueOption, String falseOption) {
+            throw new UnansweredQuestionException(TestSuccess.NOTRUN, question);
+        }
+
+        @Override
+        public void setAnswerPolicy(AnswerPolicy policy) {}
+
+        @Override
+        public void publishResult(String groupName, String testName, TestResults result) {}
+
+        @Override
+        public Future<?> publishResults(TestResultsStore.Snapshot results) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public void abandonSession() {}
+    }
+
+    /**
+     * Starts a session of the given groups and runs it up to the first cycle of tests, so that every
+     * following {@link TestManager#periodic()} runs tests.
+     */
+    public static void startSession(List<TestGroup> groups) {
+        if (!loaded) {
+            TestManager.useClient(new NullClient());
+            TestManager.load();
+            loaded = true;
+        }
+        TestManager.init();
+        for (TestGroup group : groups) {
+            TestManager.queueGroupToTest(group);
+        }
+        while (!TestManager.testSelectionMade) {
+            TestManager.periodic();
+        }
+    }
+
+    /** Runs a session of the given groups from start to finish. */
+    public static void runSession(List<TestGroup> groups) {
+        startSession(groups);
+        while (!TestManager.testsFinished) {
+            TestManager.periodic();
+        }
+    }
+
+    /** @return Groups whose first test never finishes, so every cycle runs one test of each group. */
+    public static List<TestGroup> endlessGroups(int groupCount, int testsPerGroup) {
+        return endlessGroups(groupCount, testsPerGroup, 0);
+    }
+
+    /**
+     * @param subsystemCount How many subsystems the groups take turns requiring, or 0 for no requirements
+     * @return Groups whose first test never finishes. With requirements, groups sharing a subsystem take
+     * turns, so every cycle locks requirements and turns groups away.
+     */
+    public static List<TestGroup> endlessGroups(int groupCount, int testsPerGroup, int subsystemCount) {
+        Subsystem[] subsystems = new Subsystem[subsystemCount];
+        for (int i = 0; i < subsystemCount; i++) {
+            subsystems[i] = new Subsystem() {};
+        }
+        List<TestGroup> out = new ArrayList<TestGroup>();
+        for (int i = 0; i < groupCount; i++) {
+            Test[] tests = new Test[testsPerGroup];
+            for (int j = 0; j < testsPerGroup; j++) {
+                tests[j] = new TestUtil.OnePhaseTest(() -> {}, () -> false, "Endless " + j);
+            }
+            Set<Subsystem> requirements = subsystemCount > 0 ? Set.of(subsystems[i % subsystemCount]) : Set.of();
+            out.add(new SyntheticGroup("Group " + i, tests, requirements));
+        }
+        return out;
+    }
+
+    /** @return One root test, and the given number of groups each holding a test which depends on it. */
+    public static List<TestGroup> wideGraph(int dependents) {
+        List<TestGroup> out = new ArrayList<TestGroup>();
+        Test root = new TestUtil.InstantTest(() -> {}, "Root");
+        out.add(new SyntheticGroup("Root", new Test[] {root}));
+        for (int i = 0; i < dependents; i++) {
+            Test dependent = new TestUtil.InstantTest(() -> {}, "Dependent", new Test[] {root});
+            out.add(new SyntheticGroup("Group " + i, new Test[] {dependent}));
+        }
+        return out;
+    }
+
+    /** @return One group of the given number of tests, each depending on the one before it. */
+    public static List<TestGroup> deepGraph(int length) {
+        Test[] chain = new Test[length];
+        for (int i = 0; i < length; i++) {
+            chain[i] = new TestUtil.InstantTest(() -> {}, "Link " + i, i > 0 ? new Test[] {chain[i - 1]} : new Test[0]);
+        }
+        List<TestGroup> out = new ArrayList<TestGroup>();
+        out.add(new SyntheticGroup("Chain", chain));
+        return out;
+    }
+}
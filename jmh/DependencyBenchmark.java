@@ -0,0 +1,52 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A whole session of instant tests, from compiling the dependency graph to the last result, on a wide
+ * graph (one test with many dependents in other groups) and a deep one (a chain of dependencies).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DependencyBenchmark {
+    @Param({"wide", "deep"})
+    public String shape;
+
+    @Param({"100", "1000"})
+    public int size;
+
+    private List<TestGroup> suite;
+
+    @Setup(Level.Trial)
+    public void createSuite() {
+        suite = shape.equals("wide") ? BenchmarkSuites.wideGraph(size) : BenchmarkSuites.deepGraph(size);
+    }
+
+    @Benchmark
+    public int session() {
+        BenchmarkSuites.runSession(suite);
+        return TestManager.results.size();
+    }
+}
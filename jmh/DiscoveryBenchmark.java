@@ -0,0 +1,80 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.test;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import frc.robot.test.TestMethodCache.TestMethod;
+import frc.robot.test.TestUtil.InstantTestMethod;
+
+/**
+ * Finding a group's {@link InstantTestMethod}s by reflection the first time it is seen, and building
+ * its tests each session once they are cached.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DiscoveryBenchmark {
+    /** A group with a typical number of test methods, among as many other methods. */
+    public static class AnnotatedGroup implements TestGroup {
+        @InstantTestMethod public void test0() {}
+        @InstantTestMethod public void test1() {}
+        @InstantTestMethod public void test2() {}
+        @InstantTestMethod public void test3() {}
+        @InstantTestMethod public void test4() {}
+        @InstantTestMethod public void test5() {}
+        @InstantTestMethod public void test6() {}
+        @InstantTestMethod public void test7() {}
+        @InstantTestMethod public void test8() {}
+        @InstantTestMethod(name = "Named test") public void test9() {}
+
+        public void helper0() {}
+        public void helper1() {}
+        public void helper2() {}
+        public void helper3() {}
+        public void helper4() {}
+        public void helper5() {}
+        public void helper6() {}
+        public void helper7() {}
+        public void helper8() {}
+        public void helper9() {}
+
+        @Override
+        public Test[] getTests() {
+            return new Test[0];
+        }
+
+        @Override
+        public String getName() {
+            return "Annotated";
+        }
+    }
+
+    private final AnnotatedGroup group = new AnnotatedGroup();
+
+    @Benchmark
+    public TestMethod[] discoverUncached() {
+        TestMethodCache.forget(AnnotatedGroup.class);
+        return TestMethodCache.getTestMethods(AnnotatedGroup.class);
+    }
+
+    @Benchmark
+    public Test[] testsFromCachedGroup() {
+        return TestManager.getTestsFromGroup(group);
+    }
+}
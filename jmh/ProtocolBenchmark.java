@@ -0,0 +1,97 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import frc.robot.test.TestManager.TestResults;
+import frc.robot.test.TestManager.TestSuccess;
+import frc.robot.test.networking.Message;
+import frc.robot.test.networking.ProtocolCodec;
+
+/**
+ * Encoding the results of a session the way {@code Workstation.publishResults} and
+ * {@code Workstation.publishResult} do, with each codec a client can negotiate. Each operation encodes
+ * every result once, so results per second is operations per second times {@code results}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ProtocolBenchmark {
+    @Param({"100", "10000"})
+    public int results;
+
+    @Param({"line", "line-timing", "framed", "framed-deflate"})
+    public String codec;
+
+    private TestResultsStore.Snapshot snapshot;
+    private ProtocolCodec protocolCodec;
+
+    @Setup(Level.Trial)
+    public void createResults() {
+        TestResultsStore store = new TestResultsStore();
+        TestSuccess[] statuses = TestSuccess.values();
+        for (int i = 0; i < results; i++) {
+            TestSuccess status = statuses[i % statuses.length];
+            TestResults result = new TestResults(status, status == TestSuccess.SUCCESS ? "" : "Expected 4.0 but was " + i);
+            result.m_cycles = i % 50 + 1;
+            result.m_wallNanos = 1_000_000L * (i % 50 + 1);
+            result.m_setupToClosedownNanos = result.m_wallNanos;
+            result.m_periodicLatency = new LatencyHistogram();
+            result.m_periodicLatency.record(20_000 + i);
+            store.put("Group " + i / 20, "Test " + i, result);
+        }
+        snapshot = store.snapshot();
+
+        switch (codec) {
+            case "line-timing":
+                ProtocolCodec.Line line = new ProtocolCodec.Line();
+                line.setIncludeTiming(true);
+                protocolCodec = line;
+                break;
+            case "framed":
+                protocolCodec = new ProtocolCodec.Framed(false);
+                break;
+            case "framed-deflate":
+                protocolCodec = new ProtocolCodec.Framed(true);
+                break;
+            default:
+                protocolCodec = new ProtocolCodec.Line();
+        }
+    }
+
+    /** Every result in one message, as sent at the end of a session. */
+    @Benchmark
+    public ByteBuffer encodeAllResults() {
+        return protocolCodec.encode(Message.results(snapshot));
+    }
+
+    /** Every result in its own message, as streamed while a session runs. */
+    @Benchmark
+    public void encodeStreamedResults(Blackhole blackhole) {
+        for (int id = 0; id < snapshot.size(); id++) {
+            TestResultsStore.Entry entry = snapshot.get(id);
+            blackhole.consume(protocolCodec.encode(Message.result(entry.m_group, entry.m_name, entry.m_result)));
+        }
+    }
+}
@@ -0,0 +1,61 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The cost of one cycle of {@link TestManager#periodic()} while every group has a test in progress,
+ * which is the steady state of a long session. Run with {@code -prof gc} to see the bytes allocated
+ * per cycle ({@code gc.alloc.rate.norm}).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SchedulerBenchmark {
+    @Param({"10", "100", "1000"})
+    public int groups;
+
+    @Param({"10"})
+    public int testsPerGroup;
+
+    @Param({"true", "false"})
+    public boolean parallel;
+
+    private List<TestGroup> suite;
+
+    @Setup(Level.Trial)
+    public void createSuite() {
+        suite = BenchmarkSuites.endlessGroups(groups, testsPerGroup);
+        TestManager.setRunGroupsInParallel(parallel);
+    }
+
+    @Setup(Level.Iteration)
+    public void startSession() {
+        BenchmarkSuites.startSession(suite);
+    }
+
+    @Benchmark
+    public void periodic() {
+        TestManager.periodic();
+    }
+}
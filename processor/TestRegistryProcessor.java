@@ -0,0 +1,244 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.test.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates {@code frc.robot.test.GeneratedTestRegistry}, which lists every test group class along with
+ * its {@code @InstantTestMethod}s bound to direct method calls. Passing it to
+ * {@code TestManager.load(TestRegistry)} lets the robot start without searching for tests by reflection.
+ *
+ * <p>Mistakes which would otherwise only be found on the robot are reported as compile errors: test
+ * methods which are not public, take parameters, or are declared outside of a test group, test
+ * names used twice in one group, and groups the registry can't reach.</p>
+ *
+ * <p>This runs at compile time, so it cannot depend on the rest of the tester, and refers to its
+ * classes by name.</p>
+ */
+@SupportedAnnotationTypes({
+    TestRegistryProcessor.INSTANT_TEST_METHOD,
+    TestRegistryProcessor.REGISTERED_TEST_GROUP
+})
+public class TestRegistryProcessor extends AbstractProcessor {
+    static final String INSTANT_TEST_METHOD = "frc.robot.test.TestUtil.InstantTestMethod";
+    static final String REGISTERED_TEST_GROUP = "frc.robot.test.TestUtil.RegisteredTestGroup";
+    private static final String TEST_GROUP = "frc.robot.test.TestGroup";
+    private static final String REGISTRY_PACKAGE = "frc.robot.test";
+    private static final String REGISTRY_NAME = "GeneratedTestRegistry";
+
+    /** Every test group class found, by qualified name, in the order they were found. */
+    private final Set<String> groupClasses = new LinkedHashSet<String>();
+    private boolean generated = false;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement testMethodAnnotation = processingEnv.getElementUtils().getTypeElement(INSTANT_TEST_METHOD);
+        TypeElement groupAnnotation = processingEnv.getElementUtils().getTypeElement(REGISTERED_TEST_GROUP);
+
+        Set<String> found = new LinkedHashSet<String>();
+        if (testMethodAnnotation != null) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(testMethodAnnotation)) {
+                found.add(((TypeElement) element.getEnclosingElement()).getQualifiedName().toString());
+            }
+        }
+        if (groupAnnotation != null) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(groupAnnotation)) {
+                found.add(((TypeElement) element).getQualifiedName().toString());
+            }
+        }
+
+        if (generated) {
+            // Only test groups generated by other processors can show up after the first round
+            for (String className : found) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    className + " was generated after the test registry, so its tests will be found by reflection");
+            }
+        } else if (!found.isEmpty() || roundEnv.processingOver()) {
+            // Written as early as possible, so the registry itself can still be compiled normally
+            groupClasses.addAll(found);
+            generated = true;
+            writeRegistry(testMethodAnnotation);
+        }
+        return false;
+    }
+
+    private void writeRegistry(TypeElement testMethodAnnotation) {
+        Map<TypeElement, List<ExecutableElement>> methodsByClass = new LinkedHashMap<TypeElement, List<ExecutableElement>>();
+        boolean valid = true;
+
+        for (String className : groupClasses) {
+            TypeElement groupClass = processingEnv.getElementUtils().getTypeElement(className);
+            valid &= validateClass(groupClass);
+
+            List<ExecutableElement> methods = new ArrayList<ExecutableElement>();
+            Map<String, ExecutableElement> methodsByName = new HashMap<String, ExecutableElement>();
+            for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(groupClass))) {
+                if (testMethodAnnotation == null || findAnnotation(method, testMethodAnnotation) == null) {
+                    continue;
+                }
+                valid &= validateMethod(method);
+
+                String testName = getTestName(method, testMethodAnnotation);
+                ExecutableElement previous = methodsByName.put(testName, method);
+                if (previous != null) {
+                    error(method, "Test name \"" + testName + "\" is already used by " + previous.getSimpleName()
+                        + " in test group " + groupClass.getQualifiedName());
+                    valid = false;
+                }
+                methods.add(method);
+            }
+            methodsByClass.put(groupClass, methods);
+        }
+
+        if (!valid) {
+            return;
+        }
+
+        try (Writer writer = processingEnv.getFiler().createSourceFile(REGISTRY_PACKAGE + "." + REGISTRY_NAME).openWriter()) {
+            writer.write(generateSource(methodsByClass, testMethodAnnotation));
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Could not write the test registry: " + e);
+        }
+    }
+
+    private boolean validateClass(TypeElement groupClass) {
+        TypeMirror testGroup = processingEnv.getElementUtils().getTypeElement(TEST_GROUP).asType();
+        if (!processingEnv.getTypeUtils().isAssignable(groupClass.asType(), processingEnv.getTypeUtils().erasure(testGroup))) {
+            error(groupClass, groupClass.getQualifiedName() + " has test methods or is registered, but is not a TestGroup");
+            return false;
+        }
+
+        // The registry lives in frc.robot.test, and must be able to name the class
+        for (Element element = groupClass; element.getKind() != ElementKind.PACKAGE; element = element.getEnclosingElement()) {
+            boolean samePackage = processingEnv.getElementUtils().getPackageOf(element).getQualifiedName().contentEquals(REGISTRY_PACKAGE);
+            if (element.getModifiers().contains(Modifier.PRIVATE)
+                    || (!samePackage && !element.getModifiers().contains(Modifier.PUBLIC))) {
+                error(groupClass, groupClass.getQualifiedName() + " must be public to have its tests registered");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean validateMethod(ExecutableElement method) {
+        String description = "@InstantTestMethod " + method.getEnclosingElement().getSimpleName() + "." + method.getSimpleName();
+        if (!method.getModifiers().contains(Modifier.PUBLIC)) {
+            error(method, description + " must be public");
+            return false;
+        }
+        if (!method.getParameters().isEmpty()) {
+            error(method, description + " must not take parameters");
+            return false;
+        }
+        return true;
+    }
+
+    private String generateSource(Map<TypeElement, List<ExecutableElement>> methodsByClass, TypeElement testMethodAnnotation) {
+        StringBuilder out = new StringBuilder();
+        out.append("package ").append(REGISTRY_PACKAGE).append(";\n\n");
+        out.append("import java.util.LinkedHashMap;\n");
+        out.append("import java.util.Map;\n\n");
+        out.append("import frc.robot.test.TestMethodCache.TestMethod;\n\n");
+        out.append("/** Generated by the Ammeter annotation processor. Do not edit. */\n");
+        out.append("@javax.annotation.processing.Generated(\"").append(getClass().getName()).append("\")\n");
+        out.append("public final class ").append(REGISTRY_NAME).append(" implements TestRegistry {\n");
+        out.append("    @Override\n");
+        out.append("    public Map<Class<?>, TestMethod[]> getTestMethods() {\n");
+        out.append("        Map<Class<?>, TestMethod[]> out = new LinkedHashMap<Class<?>, TestMethod[]>();\n");
+
+        for (Map.Entry<TypeElement, List<ExecutableElement>> entry : methodsByClass.entrySet()) {
+            String className = processingEnv.getTypeUtils().erasure(entry.getKey().asType()).toString();
+            out.append("        out.put(").append(className).append(".class, new TestMethod[] {\n");
+            for (ExecutableElement method : entry.getValue()) {
+                out.append("            new TestMethod(\"").append(escape(getTestName(method, testMethodAnnotation))).append("\", ");
+                String call;
+                if (method.getModifiers().contains(Modifier.STATIC)) {
+                    String owner = processingEnv.getTypeUtils().erasure(method.getEnclosingElement().asType()).toString();
+                    call = owner + "." + method.getSimpleName() + "()";
+                } else {
+                    call = "((" + className + ") group)." + method.getSimpleName() + "()";
+                }
+                if (method.getThrownTypes().isEmpty()) {
+                    out.append("(group) -> ").append(call);
+                } else {
+                    // Checked exceptions are wrapped, as when the method is called through reflection
+                    out.append("(group) -> {\n");
+                    out.append("                try {\n");
+                    out.append("                    ").append(call).append(";\n");
+                    out.append("                } catch (RuntimeException | Error e) {\n");
+                    out.append("                    throw e;\n");
+                    out.append("                } catch (Throwable e) {\n");
+                    out.append("                    throw new RuntimeException(e.toString());\n");
+                    out.append("                }\n");
+                    out.append("            }");
+                }
+                out.append("),\n");
+            }
+            out.append("        });\n");
+        }
+
+        out.append("        return out;\n");
+        out.append("    }\n");
+        out.append("}\n");
+        return out.toString();
+    }
+
+    /** Finds the name given to a test method, which is the method's name unless one was specified. */
+    private static String getTestName(ExecutableElement method, TypeElement testMethodAnnotation) {
+        AnnotationMirror annotation = findAnnotation(method, testMethodAnnotation);
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value : annotation.getElementValues().entrySet()) {
+            if (value.getKey().getSimpleName().contentEquals("name") && !value.getValue().getValue().toString().isEmpty()) {
+                return value.getValue().getValue().toString();
+            }
+        }
+        return method.getSimpleName().toString();
+    }
+
+    private static AnnotationMirror findAnnotation(Element element, TypeElement annotationType) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            if (((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotationType.getQualifiedName())) {
+                return annotation;
+            }
+        }
+        return null;
+    }
+
+    private static String escape(String text) {
+        return text.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -0,0 +1,300 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+
+import frc.robot.test.TestManager.GroupRunner;
+import frc.robot.test.TestManager.TestSuccess;
+
+/**
+ * The dependencies between every test in a session, compiled once when the session starts.
+ *
+ * <p>Each {@link Test} object becomes exactly one {@link Node}, no matter how many groups list it
+ * or how many tests depend on it, so every test is run at most once. A test belongs to the first
+ * group listing it, or if no selected group lists it, to the group of the first test depending
+ * on it. Dependencies may cross group boundaries.</p>
+ *
+ * <p>Tests which can never be run correctly are rejected while compiling: those sharing a name with
+ * another test of their group, and those on a dependency cycle. Their rejection messages are
+ * available from {@link Node#m_rejection}.</p>
+ */
+public class DependencyGraph {
+
+    /** A test in the graph, along with the state the {@link TestManager} keeps while scheduling it. */
+    public static class Node {
+        public final Test m_test;
+        public final String m_name;
+        /** The name this test's result is reported under, which differs from its name only for duplicates. */
+        public String m_resultName;
+        public final GroupRunner m_owner;
+        public Node[] m_dependencies;
+        public boolean[] m_successRequirements;
+        public final List<Node> m_dependents = new ArrayList<Node>();
+
+        /** The number of dependencies which have not yet finished. The test is ready when this is 0. */
+        public int m_pendingDependencies;
+        /** The result of this test, or null if it has not finished. */
+        public TestSuccess m_result = null;
+        /** Why this test cannot be run, or null if it can. */
+        public String m_rejection = null;
+
+        /** When the test was readied, from the {@link TestManager#setClock(java.util.function.LongSupplier) clock}. */
+        public long m_readyNanos;
+        /** When the test was set up, from the {@link TestManager#setClock(java.util.function.LongSupplier) clock}. */
+        public long m_startNanos;
+        /** The cycle the test was set up in. Its timeout counts every cycle since, including any it spent parked. */
+        public int m_startCycle;
+        /** The number of cycles the test has been run for. */
+        public int m_cycles = 0;
+        /** The last cycle the test was run in. */
+        public int m_lastCycleRun = -1;
+        /** The future this test is parked waiting on, or null if it isn't parked. */
+        public Future<?> m_awaiting = null;
+        /** The test's timeout, read once when the graph is compiled. */
+        public final Timeout m_timeout;
+        /** Allocated with the node, so that timing a test never allocates while it runs. */
+        public final LatencyHistogram m_periodicLatency = new LatencyHistogram();
+
+        protected Node(Test test, GroupRunner owner) {
+            m_test = test;
+            m_name = test.getName();
+            m_resultName = m_name;
+            m_owner = owner;
+            m_timeout = test.getTimeout();
+        }
+
+        public boolean isResolved() {
+            return m_result != null;
+        }
+
+        /**
+         * Whether the given dependency's result allows this test to run. A dependency which was not
+         * run never allows it.
+         */
+        public boolean acceptsResultOf(Node dependency) {
+            for (int i = 0; i < m_dependencies.length; i++) {
+                if (m_dependencies[i] != dependency) {
+                    continue;
+                }
+                if (dependency.m_result == TestSuccess.NOTRUN) {
+                    return false;
+                }
+                if ((dependency.m_result == TestSuccess.SUCCESS) != m_successRequirements[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private final Map<Test, Node> nodes = new IdentityHashMap<Test, Node>();
+    private final List<Node> nodesInCreationOrder = new ArrayList<Node>();
+    private final List<Node> topologicalOrder = new ArrayList<Node>();
+    private final List<Node> rejected = new ArrayList<Node>();
+
+    /**
+     * Compiles the graph of every test run by the given groups, including any dependencies they
+     * have outside of those groups.
+     *
+     * @param runners The runners of the groups in the session
+     */
+    public DependencyGraph(List<GroupRunner> runners) {
+        for (GroupRunner runner : runners) {
+            for (Test test : TestManager.getTestsFromGroup(runner.m_group)) {
+                if (!nodes.containsKey(test)) {
+                    createNode(test, runner);
+                }
+            }
+        }
+
+        // Dependencies are captured once, pulling in tests not listed by any group as they are found
+        for (int i = 0; i < nodesInCreationOrder.size(); i++) {
+            Node node = nodesInCreationOrder.get(i);
+            Test[] dependencies = node.m_test.getDependencies();
+            boolean[] requirements = node.m_test.getDependencySuccessRequirements();
+            if (dependencies == null) {
+                dependencies = new Test[0];
+            }
+
+            node.m_dependencies = new Node[dependencies.length];
+            node.m_successRequirements = new boolean[dependencies.length];
+            for (int j = 0; j < dependencies.length; j++) {
+                Node dependency = nodes.get(dependencies[j]);
+                if (dependency == null) {
+                    dependency = createNode(dependencies[j], node.m_owner);
+                }
+                node.m_dependencies[j] = dependency;
+                node.m_successRequirements[j] = requirements == null || j >= requirements.length || requirements[j];
+                dependency.m_dependents.add(node);
+            }
+            node.m_pendingDependencies = dependencies.length;
+        }
+
+        rejectDuplicateNames();
+        sortTopologically();
+    }
+
+    private Node createNode(Test test, GroupRunner owner) {
+        Node node = new Node(test, owner);
+        nodes.put(test, node);
+        nodesInCreationOrder.add(node);
+        owner.m_nodes.add(node);
+        owner.m_unresolved++;
+        return node;
+    }
+
+    /**
+     * Results are reported by name, so only the first test of each name in a group may run. Each
+     * other copy is reported under a name of its own, such as "Drive (duplicate 2)", which no other
+     * test of the group has.
+     */
+    private void rejectDuplicateNames() {
+        Map<GroupRunner, Set<String>> namesByGroup = new HashMap<GroupRunner, Set<String>>();
+        for (Node node : nodesInCreationOrder) {
+            namesByGroup.computeIfAbsent(node.m_owner, (runner) -> new HashSet<String>()).add(node.m_name);
+        }
+
+        Map<GroupRunner, Set<String>> usedByGroup = new HashMap<GroupRunner, Set<String>>();
+        for (Node node : nodesInCreationOrder) {
+            Set<String> used = usedByGroup.computeIfAbsent(node.m_owner, (runner) -> new HashSet<String>());
+            if (used.add(node.m_name)) {
+                continue;
+            }
+            Set<String> names = namesByGroup.get(node.m_owner);
+            int copy = 2;
+            String resultName = node.m_name + " (duplicate " + copy + ")";
+            while (names.contains(resultName) || used.contains(resultName)) {
+                copy++;
+                resultName = node.m_name + " (duplicate " + copy + ")";
+            }
+            used.add(resultName);
+            node.m_resultName = resultName;
+            reject(node, "Duplicate test name in group " + node.m_owner.m_group.getName());
+        }
+    }
+
+    /**
+     * Orders the nodes so that each comes after all of its dependencies, keeping the order tests were
+     * listed in where possible. Nodes left over lie on or behind a dependency cycle.
+     */
+    private void sortTopologically() {
+        Map<Node, Integer> remainingDependencies = new IdentityHashMap<Node, Integer>();
+        ArrayDeque<Node> ready = new ArrayDeque<Node>();
+        for (Node node : nodesInCreationOrder) {
+            remainingDependencies.put(node, node.m_dependencies.length);
+            if (node.m_dependencies.length == 0) {
+                ready.add(node);
+            }
+        }
+
+        while (!ready.isEmpty()) {
+            Node node = ready.poll();
+            topologicalOrder.add(node);
+            for (Node dependent : node.m_dependents) {
+                int remaining = remainingDependencies.get(dependent) - 1;
+                remainingDependencies.put(dependent, remaining);
+                if (remaining == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+
+        if (topologicalOrder.size() == nodesInCreationOrder.size()) {
+            return;
+        }
+
+        // Peel off the tests which only depend on a cycle, leaving the tests actually on one
+        Set<Node> cyclic = new HashSet<Node>();
+        for (Node node : nodesInCreationOrder) {
+            if (remainingDependencies.get(node) > 0) {
+                cyclic.add(node);
+            }
+        }
+        Set<Node> downstream = new HashSet<Node>();
+        boolean peeled = true;
+        while (peeled) {
+            peeled = false;
+            for (Node node : cyclic) {
+                boolean hasCyclicDependent = false;
+                for (Node dependent : node.m_dependents) {
+                    if (cyclic.contains(dependent) && !downstream.contains(dependent)) {
+                        hasCyclicDependent = true;
+                        break;
+                    }
+                }
+                if (!hasCyclicDependent && downstream.add(node)) {
+                    peeled = true;
+                }
+            }
+        }
+
+        for (Node node : nodesInCreationOrder) {
+            if (!cyclic.contains(node)) {
+                continue;
+            }
+            if (downstream.contains(node)) {
+                reject(node, "Depends on a dependency cycle");
+            } else {
+                reject(node, "Dependency cycle: " + describeCycleFrom(node, cyclic, downstream));
+            }
+        }
+    }
+
+    /** Follows dependencies on the cycle from the given node until it repeats, naming each test. */
+    private static String describeCycleFrom(Node start, Set<Node> cyclic, Set<Node> downstream) {
+        List<Node> path = new ArrayList<Node>();
+        Node current = start;
+        while (!path.contains(current)) {
+            path.add(current);
+            for (Node dependency : current.m_dependencies) {
+                if (cyclic.contains(dependency) && !downstream.contains(dependency)) {
+                    current = dependency;
+                    break;
+                }
+            }
+        }
+
+        StringBuilder out = new StringBuilder();
+        for (int i = path.indexOf(current); i < path.size(); i++) {
+            out.append(path.get(i).m_name).append(" -> ");
+        }
+        return out.append(current.m_name).toString();
+    }
+
+    private void reject(Node node, String reason) {
+        if (node.m_rejection == null) {
+            node.m_rejection = reason;
+            rejected.add(node);
+        }
+    }
+
+    /** @return Every test in the session not on a dependency cycle, each after all of its dependencies. */
+    public List<Node> getTopologicalOrder() {
+        return topologicalOrder;
+    }
+
+    /** @return Every test that was rejected while compiling, in the order they were found. */
+    public List<Node> getRejected() {
+        return rejected;
+    }
+
+    /** @return The node for the given test, or null if it is not part of this session. */
+    public Node getNode(Test test) {
+        return nodes.get(test);
+    }
+
+    public int size() {
+        return nodesInCreationOrder.size();
+    }
+}
@@ -0,0 +1,150 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits test groups into shards which can be run by separate robot processes without changing any
+ * result. Groups are linked when a test of one depends on a test of the other, or when both depend on
+ * the same test which no group lists (see {@link DependencyGraph} for who owns such a test), and every
+ * linked group is kept in the same shard. The split only depends on the groups and their order, so the
+ * same suite is always split the same way.
+ */
+public class GroupPartition {
+    private final int[] parent;
+
+    private GroupPartition(int groupCount) {
+        parent = new int[groupCount];
+        for (int i = 0; i < groupCount; i++) {
+            parent[i] = i;
+        }
+    }
+
+    /**
+     * Splits the groups into the given number of shards, balancing the number of tests in each. Each
+     * shard keeps its groups in the order given.
+     *
+     * @param groups The groups to split
+     * @param shardCount How many shards to split them into
+     * @return The groups of each shard, some of which may be empty if there are few groups
+     */
+    public static List<List<TestGroup>> partition(List<TestGroup> groups, int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Need at least one shard, not " + shardCount);
+        }
+        GroupPartition linked = new GroupPartition(groups.size());
+        int[] testCounts = linked.linkDependentGroups(groups);
+
+        // Each set of linked groups, in the order of its first group
+        Map<Integer, List<Integer>> components = new LinkedHashMap<Integer, List<Integer>>();
+        for (int i = 0; i < groups.size(); i++) {
+            components.computeIfAbsent(linked.find(i), (root) -> new ArrayList<Integer>()).add(i);
+        }
+        List<List<Integer>> byWeight = new ArrayList<List<Integer>>(components.values());
+        byWeight.sort((a, b) -> Long.compare(weightOf(b, testCounts), weightOf(a, testCounts)));
+
+        // The heaviest sets first, each to the lightest shard so far
+        int[] shardOf = new int[groups.size()];
+        long[] shardWeights = new long[shardCount];
+        for (List<Integer> component : byWeight) {
+            int lightest = 0;
+            for (int shard = 1; shard < shardCount; shard++) {
+                if (shardWeights[shard] < shardWeights[lightest]) {
+                    lightest = shard;
+                }
+            }
+            shardWeights[lightest] += weightOf(component, testCounts);
+            for (int group : component) {
+                shardOf[group] = lightest;
+            }
+        }
+
+        List<List<TestGroup>> shards = new ArrayList<List<TestGroup>>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            shards.add(new ArrayList<TestGroup>());
+        }
+        for (int i = 0; i < groups.size(); i++) {
+            shards.get(shardOf[i]).add(groups.get(i));
+        }
+        return shards;
+    }
+
+    /**
+     * Links every pair of groups which would share a test or a dependency.
+     *
+     * @return The number of tests each group lists
+     */
+    private int[] linkDependentGroups(List<TestGroup> groups) {
+        Map<Test, Integer> ownerOf = new IdentityHashMap<Test, Integer>();
+        List<Test[]> testsOfGroups = new ArrayList<Test[]>();
+        int[] testCounts = new int[groups.size()];
+        for (int i = 0; i < groups.size(); i++) {
+            Test[] tests = TestManager.getTestsFromGroup(groups.get(i));
+            testsOfGroups.add(tests);
+            testCounts[i] = tests.length;
+            for (Test test : tests) {
+                Integer owner = ownerOf.putIfAbsent(test, i);
+                if (owner != null) {
+                    union(owner, i);
+                }
+            }
+        }
+
+        for (int i = 0; i < groups.size(); i++) {
+            ArrayDeque<Test> toVisit = new ArrayDeque<Test>();
+            for (Test test : testsOfGroups.get(i)) {
+                toVisit.add(test);
+            }
+            while (!toVisit.isEmpty()) {
+                Test[] dependencies = toVisit.poll().getDependencies();
+                if (dependencies == null) {
+                    continue;
+                }
+                for (Test dependency : dependencies) {
+                    Integer owner = ownerOf.putIfAbsent(dependency, i);
+                    if (owner == null) {
+                        toVisit.add(dependency); // Listed by no group, so it runs as part of this one
+                    } else if (owner != i) {
+                        union(owner, i);
+                    }
+                }
+            }
+        }
+        return testCounts;
+    }
+
+    private static long weightOf(List<Integer> component, int[] testCounts) {
+        long weight = 0;
+        for (int group : component) {
+            weight += Math.max(testCounts[group], 1);
+        }
+        return weight;
+    }
+
+    private int find(int group) {
+        while (parent[group] != group) {
+            parent[group] = parent[parent[group]];
+            group = parent[group];
+        }
+        return group;
+    }
+
+    /** Links two groups, keeping the earlier as the root so the result doesn't depend on the order links are found in. */
+    private void union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA < rootB) {
+            parent[rootB] = rootA;
+        } else if (rootB < rootA) {
+            parent[rootA] = rootB;
+        }
+    }
+}
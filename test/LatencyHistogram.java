@@ -0,0 +1,122 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.test;
+
+/**
+ * Counts how long something took, in buckets which double in width: bucket 0 holds times under a
+ * microsecond, and bucket {@code i} holds times from 2<sup>i-1</sup> up to 2<sup>i</sup> microseconds.
+ * The last bucket holds everything longer. The buckets are allocated up front, so recording a time
+ * never allocates and costs only a few instructions.
+ */
+public class LatencyHistogram {
+    public static final int BUCKET_COUNT = 20;
+
+    private final long[] buckets = new long[BUCKET_COUNT];
+    private long count = 0;
+    private long totalNanos = 0;
+    private long maxNanos = 0;
+
+    /** @param nanos How long one call took, in nanoseconds */
+    public void record(long nanos) {
+        buckets[bucketOf(nanos)]++;
+        count++;
+        totalNanos += nanos;
+        if (nanos > maxNanos) {
+            maxNanos = nanos;
+        }
+    }
+
+    /** @return The index of the bucket holding the given time. */
+    public static int bucketOf(long nanos) {
+        long micros = nanos / 1000;
+        int bucket = 64 - Long.numberOfLeadingZeros(micros);
+        return bucket < BUCKET_COUNT ? bucket : BUCKET_COUNT - 1;
+    }
+
+    /** @return The longest time, in nanoseconds, which could be counted in the given bucket. */
+    public static long bucketUpperBoundNanos(int bucket) {
+        return bucket == BUCKET_COUNT - 1 ? Long.MAX_VALUE : (1L << bucket) * 1000 - 1;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    /** @return The number of times counted in the given bucket. */
+    public long getBucketCount(int bucket) {
+        return buckets[bucket];
+    }
+
+    /**
+     * @param fraction The fraction of times to be under the result, such as 0.99
+     * @return An upper bound on that fraction of the recorded times, in nanoseconds, or 0 if none were recorded
+     */
+    public long getQuantileUpperBoundNanos(double fraction) {
+        long target = (long) Math.ceil(count * fraction);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets[i];
+            if (seen >= target && seen > 0) {
+                return Math.min(bucketUpperBoundNanos(i), maxNanos);
+            }
+        }
+        return 0;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = 0;
+        }
+        count = 0;
+        totalNanos = 0;
+        maxNanos = 0;
+    }
+
+    /**
+     * Replaces the recorded times with those of another histogram, such as one received from another
+     * robot process.
+     *
+     * @param bucketCounts The bucket counts, as given by {@link #bucketsToString()}
+     * @param total The total of the times, in nanoseconds
+     * @param max The longest time, in nanoseconds
+     */
+    public void restore(String bucketCounts, long total, long max) {
+        reset();
+        String[] counts = bucketCounts.isEmpty() ? new String[0] : bucketCounts.split(",");
+        if (counts.length > BUCKET_COUNT) {
+            throw new IllegalArgumentException("Expected at most " + BUCKET_COUNT + " buckets, not " + counts.length);
+        }
+        for (int i = 0; i < counts.length; i++) {
+            buckets[i] = Long.parseLong(counts[i]);
+            count += buckets[i];
+        }
+        totalNanos = total;
+        maxNanos = max;
+    }
+
+    /** @return The bucket counts separated by commas, leaving off empty buckets at the end. */
+    public String bucketsToString() {
+        int last = BUCKET_COUNT - 1;
+        while (last > 0 && buckets[last] == 0) {
+            last--;
+        }
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i <= last; i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append(buckets[i]);
+        }
+        return out.toString();
+    }
+}
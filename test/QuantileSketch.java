@@ -0,0 +1,238 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.test;
+
+/**
+ * Summarizes a stream of measurements in constant memory, well enough to ask for any quantile of them.
+ * Like a {@link LatencyHistogram}, values are counted in buckets which grow in width, but the buckets
+ * grow by a factor set by the relative accuracy, so any quantile is within that fraction of a measured
+ * value (this is the idea behind DDSketch). Positive and negative values have buckets of their own.
+ * Each has a fixed number, allocated up front, and once values span more than they can hold, the
+ * smallest magnitudes are merged into one bucket, so the high quantiles worth asserting on stay accurate.
+ */
+public class QuantileSketch {
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+    public static final int DEFAULT_BUCKET_COUNT = 1024;
+    /** Values smaller than this in magnitude are counted as zero. */
+    public static final double MIN_MAGNITUDE = 1E-9;
+
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double logGamma;
+    private final Buckets positive;
+    private final Buckets negative;
+    private long zeroCount = 0;
+    private long count = 0;
+    private double total = 0;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * The counts of one sign, as a window of bucket indices which slides to follow the values. Once
+     * the values span the whole window, smaller values are merged into its first bucket.
+     */
+    private static class Buckets {
+        final long[] m_counts;
+        /** The bucket index counted by {@code m_counts[0]}. */
+        int m_offset = 0;
+        long m_count = 0;
+
+        Buckets(int bucketCount) {
+            m_counts = new long[bucketCount];
+        }
+
+        void add(int index) {
+            if (m_count == 0) {
+                m_offset = index - m_counts.length / 2;
+            }
+            int last = m_offset + m_counts.length - 1;
+            if (index > last) {
+                slideUp(index - last);
+            } else if (index < m_offset) {
+                // Only as far as the empty buckets at the top allow, merging anything smaller
+                slideDown(Math.min(m_offset - index, m_counts.length - 1 - highestUsed()));
+            }
+            m_counts[Math.max(index - m_offset, 0)]++;
+            m_count++;
+        }
+
+        /** Moves the window up, merging the buckets which fall out of it into its new first bucket. */
+        private void slideUp(int by) {
+            int length = m_counts.length;
+            long merged = 0;
+            for (int i = 0; i < Math.min(by + 1, length); i++) {
+                merged += m_counts[i];
+            }
+            if (by < length) {
+                System.arraycopy(m_counts, by + 1, m_counts, 1, length - by - 1);
+            }
+            for (int i = Math.max(length - by, 1); i < length; i++) {
+                m_counts[i] = 0;
+            }
+            m_counts[0] = merged;
+            m_offset += by;
+        }
+
+        /** Moves the window down into empty buckets at its top, so nothing is merged. */
+        private void slideDown(int by) {
+            if (by <= 0) {
+                return;
+            }
+            System.arraycopy(m_counts, 0, m_counts, by, m_counts.length - by);
+            for (int i = 0; i < by; i++) {
+                m_counts[i] = 0;
+            }
+            m_offset -= by;
+        }
+
+        /** @return The position in the window of the highest bucket with anything counted. */
+        private int highestUsed() {
+            int i = m_counts.length - 1;
+            while (i > 0 && m_counts[i] == 0) {
+                i--;
+            }
+            return i;
+        }
+
+        void reset() {
+            for (int i = 0; i < m_counts.length; i++) {
+                m_counts[i] = 0;
+            }
+            m_offset = 0;
+            m_count = 0;
+        }
+    }
+
+    /** Creates a sketch accurate to within 1% of each quantile, in 16 KB of buckets. */
+    public QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY, DEFAULT_BUCKET_COUNT);
+    }
+
+    /**
+     * @param relativeAccuracy The fraction each quantile may be off by, such as 0.01
+     * @param bucketCount The number of buckets for each sign. With 1% accuracy, 1024 buckets keep
+     * every quantile accurate over a range of nine orders of magnitude.
+     */
+    public QuantileSketch(double relativeAccuracy, int bucketCount) {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+            throw new IllegalArgumentException("The relative accuracy must be between 0 and 1, not " + relativeAccuracy);
+        }
+        if (bucketCount < 2) {
+            throw new IllegalArgumentException("Need at least two buckets, not " + bucketCount);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        logGamma = Math.log(gamma);
+        positive = new Buckets(bucketCount);
+        negative = new Buckets(bucketCount);
+    }
+
+    /** @param value One measurement. NaN is ignored. */
+    public void record(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (value >= MIN_MAGNITUDE) {
+            positive.add(indexOf(value));
+        } else if (value <= -MIN_MAGNITUDE) {
+            negative.add(indexOf(-value));
+        } else {
+            zeroCount++;
+        }
+        count++;
+        total += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /** @return The index of the bucket holding the given magnitude, which holds magnitudes up to gamma to its power. */
+    private int indexOf(double magnitude) {
+        return (int) Math.ceil(Math.log(magnitude) / logGamma);
+    }
+
+    /** @return The magnitude standing for every value counted in the given bucket, off by at most the relative accuracy. */
+    private double magnitudeOf(int index) {
+        return 2 * Math.pow(gamma, index) / (gamma + 1);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /** @return The mean of the values, or NaN if none were recorded */
+    public double getMean() {
+        return count > 0 ? total / count : Double.NaN;
+    }
+
+    /** @return The smallest value, or NaN if none were recorded */
+    public double getMin() {
+        return count > 0 ? min : Double.NaN;
+    }
+
+    /** @return The largest value, or NaN if none were recorded */
+    public double getMax() {
+        return count > 0 ? max : Double.NaN;
+    }
+
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    /**
+     * @param fraction The fraction of values to be at most the result, such as 0.95
+     * @return The value at that quantile, within the relative accuracy, or NaN if none were recorded
+     */
+    public double getQuantile(double fraction) {
+        if (fraction < 0 || fraction > 1) {
+            throw new IllegalArgumentException("A quantile must be between 0 and 1, not " + fraction);
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (fraction * (count - 1));
+        double value;
+        if (rank < negative.m_count) {
+            // The most negative values come first, so from the largest magnitude down
+            long seen = 0;
+            int i = negative.m_counts.length - 1;
+            while (seen + negative.m_counts[i] <= rank) {
+                seen += negative.m_counts[i];
+                i--;
+            }
+            value = -magnitudeOf(i + negative.m_offset);
+        } else if (rank < negative.m_count + zeroCount) {
+            value = 0;
+        } else {
+            long seen = negative.m_count + zeroCount;
+            int i = 0;
+            while (seen + positive.m_counts[i] <= rank) {
+                seen += positive.m_counts[i];
+                i++;
+            }
+            value = magnitudeOf(i + positive.m_offset);
+        }
+        return Math.max(min, Math.min(max, value));
+    }
+
+    public void reset() {
+        positive.reset();
+        negative.reset();
+        zeroCount = 0;
+        count = 0;
+        total = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+    }
+
+    /** @return A one line summary of the distribution, such as "n=50, mean 0.312, min 0.281, p50 0.309, p95 0.371, p99 0.390, max 0.396" */
+    @Override
+    public String toString() {
+        if (count == 0) {
+            return "n=0";
+        }
+        return String.format("n=%d, mean %.4g, min %.4g, p50 %.4g, p95 %.4g, p99 %.4g, max %.4g",
+            count, getMean(), getMin(), getQuantile(0.5), getQuantile(0.95), getQuantile(0.99), getMax());
+    }
+}
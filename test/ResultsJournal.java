@@ -0,0 +1,247 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import edu.wpi.first.wpilibj.Filesystem;
+import frc.robot.test.TestManager.TestResults;
+import frc.robot.test.TestManager.TestSuccess;
+
+/**
+ * A file on the robot which every result is written to as soon as it is recorded, so the results of
+ * a session survive the robot code restarting or losing power partway through. A session cut off
+ * this way can be resumed by the next one (see {@link TestManager#setResumeSessions(boolean)}).
+ *
+ * <p>The file is memory mapped, and holds only the current session. After a header, it is a list of
+ * records, each being its length, the CRC32 of its contents, and then its contents, with a length of
+ * 0 marking the end. A record's length is written after the rest of it, so a record cut off while
+ * being written is never read, and one torn by a power loss fails its CRC.</p>
+ */
+public class ResultsJournal {
+    /** The name of the journal file in the operating directory used by {@link #openDefault()}. */
+    public static final String DEFAULT_FILE_NAME = "ammeter-journal.bin";
+    /** The size of the journal file. Results which no longer fit are not journaled. */
+    public static final int CAPACITY = 1 << 20;
+    private static final int MAGIC = 0x414D4A31; // "AMJ1"
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private static final byte SESSION_START = 1;
+    private static final byte RESULT = 2;
+    private static final byte SESSION_END = 3;
+
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private final CRC32 crc = new CRC32();
+    /** The offset the next record is written at, which always holds a length of 0. */
+    private int position;
+    private boolean full = false;
+
+    /** The status of each test journaled in the current session, by group name and then test name. */
+    private final Map<String, Map<String, TestSuccess>> sessionResults = new HashMap<String, Map<String, TestSuccess>>();
+    private boolean sessionStarted = false;
+    private boolean sessionFinished = false;
+
+    private ResultsJournal(Path file, MappedByteBuffer buffer) {
+        this.file = file;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Opens a journal, reading back the session it holds. A missing or unreadable file is started afresh.
+     *
+     * @param file The journal file
+     * @return The journal
+     */
+    public static ResultsJournal open(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The mapping stays valid after the channel is closed
+            ResultsJournal journal = new ResultsJournal(file, channel.map(FileChannel.MapMode.READ_WRITE, 0, CAPACITY));
+            journal.replay();
+            return journal;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** @return The journal in {@value #DEFAULT_FILE_NAME} in the operating directory. */
+    public static ResultsJournal openDefault() {
+        return open(new File(Filesystem.getOperatingDirectory(), DEFAULT_FILE_NAME).toPath());
+    }
+
+    /** Reads every intact record in the file, and leaves {@link #position} after the last one. */
+    private void replay() {
+        if (buffer.getInt(0) != MAGIC) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, 0);
+            position = HEADER_SIZE;
+            buffer.putInt(position, 0);
+            buffer.force();
+            return;
+        }
+
+        position = HEADER_SIZE;
+        while (position + RECORD_HEADER_SIZE <= CAPACITY) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + RECORD_HEADER_SIZE + length + 4 > CAPACITY) {
+                break;
+            }
+            byte[] contents = new byte[length];
+            buffer.get(position + RECORD_HEADER_SIZE, contents);
+            crc.reset();
+            crc.update(contents);
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                System.out.println("Results journal " + file + " has a damaged record, ignoring the rest");
+                break;
+            }
+            apply(contents);
+            position += RECORD_HEADER_SIZE + length;
+        }
+        // Anything after a damaged record is dropped, so the next one written is read back
+        buffer.putInt(position, 0);
+        if (sessionStarted) {
+            System.out.println("Results journal " + file + " holds " + (sessionFinished ? "a finished" : "an interrupted")
+                + " session with " + countResults() + " results");
+        }
+    }
+
+    private void apply(byte[] contents) {
+        switch (contents[0]) {
+            case SESSION_START:
+                sessionResults.clear();
+                sessionStarted = true;
+                sessionFinished = false;
+                break;
+            case RESULT:
+                int[] offset = {2};
+                String group = readString(contents, offset);
+                String name = readString(contents, offset);
+                sessionResults.computeIfAbsent(group, key -> new HashMap<String, TestSuccess>())
+                    .put(name, TestSuccess.values()[contents[1]]);
+                break;
+            case SESSION_END:
+                sessionFinished = true;
+                break;
+            default:
+                break;
+        }
+    }
+
+    private int countResults() {
+        int count = 0;
+        for (Map<String, TestSuccess> group : sessionResults.values()) {
+            count += group.size();
+        }
+        return count;
+    }
+
+    /**
+     * @return Whether the journaled session was started but never finished, such as when the robot
+     * was disabled or restarted partway through.
+     */
+    public boolean hasInterruptedSession() {
+        return sessionStarted && !sessionFinished;
+    }
+
+    /**
+     * @param group The name of the test's group
+     * @param name The name the test's result is reported under
+     * @return Whether the test passed in the journaled session, if it was interrupted
+     */
+    public boolean passedInInterruptedSession(String group, String name) {
+        if (!hasInterruptedSession()) {
+            return false;
+        }
+        Map<String, TestSuccess> groupResults = sessionResults.get(group);
+        return groupResults != null && groupResults.get(name) == TestSuccess.SUCCESS;
+    }
+
+    /**
+     * Starts a new session, replacing the one in the file. Results carried over from an interrupted
+     * session should be written again with {@link #recordResult(String, String, TestResults)}, so they
+     * survive if this session is interrupted too.
+     */
+    public void beginSession() {
+        sessionResults.clear();
+        sessionStarted = true;
+        sessionFinished = false;
+        full = false;
+        position = HEADER_SIZE;
+        append(new byte[] {SESSION_START});
+    }
+
+    /** Writes a result to the journal as soon as it is recorded. */
+    public void recordResult(String group, String name, TestResults result) {
+        byte[] groupBytes = group.getBytes(StandardCharsets.UTF_8);
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        byte[] messageBytes = (result.m_message == null ? "" : result.m_message).getBytes(StandardCharsets.UTF_8);
+        byte[] contents = new byte[2 + 12 + groupBytes.length + nameBytes.length + messageBytes.length];
+        contents[0] = RESULT;
+        contents[1] = (byte) result.m_successResult.ordinal();
+        int offset = writeString(contents, 2, groupBytes);
+        offset = writeString(contents, offset, nameBytes);
+        writeString(contents, offset, messageBytes);
+
+        if (append(contents)) {
+            sessionResults.computeIfAbsent(group, key -> new HashMap<String, TestSuccess>()).put(name, result.m_successResult);
+        }
+    }
+
+    /** Marks the session as finished, so it isn't resumed. */
+    public void endSession() {
+        append(new byte[] {SESSION_END});
+        sessionFinished = true;
+    }
+
+    /** @return Whether the record was written, which it isn't once the journal is full. */
+    private boolean append(byte[] contents) {
+        int end = position + RECORD_HEADER_SIZE + contents.length;
+        if (end + 4 > CAPACITY) {
+            if (!full) {
+                System.out.println("Results journal " + file + " is full, later results won't be journaled");
+                full = true;
+            }
+            return false;
+        }
+
+        crc.reset();
+        crc.update(contents);
+        buffer.putInt(position + 4, (int) crc.getValue());
+        buffer.put(position + RECORD_HEADER_SIZE, contents);
+        buffer.putInt(end, 0);
+        // The length goes last, so the record doesn't exist until it is complete
+        buffer.putInt(position, contents.length);
+        buffer.force(position, end + 4 - position);
+        position = end;
+        return true;
+    }
+
+    private static int writeString(byte[] contents, int offset, byte[] bytes) {
+        contents[offset] = (byte) (bytes.length >>> 24);
+        contents[offset + 1] = (byte) (bytes.length >>> 16);
+        contents[offset + 2] = (byte) (bytes.length >>> 8);
+        contents[offset + 3] = (byte) bytes.length;
+        System.arraycopy(bytes, 0, contents, offset + 4, bytes.length);
+        return offset + 4 + bytes.length;
+    }
+
+    private static String readString(byte[] contents, int[] offset) {
+        int at = offset[0];
+        int length = ((contents[at] & 0xFF) << 24) | ((contents[at + 1] & 0xFF) << 16)
+            | ((contents[at + 2] & 0xFF) << 8) | (contents[at + 3] & 0xFF);
+        offset[0] = at + 4 + length;
+        return new String(contents, at + 4, length, StandardCharsets.UTF_8);
+    }
+}
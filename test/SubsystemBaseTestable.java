@@ -4,7 +4,10 @@
 
 package frc.robot.test;
 
+import java.util.Set;
+
 import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj2.command.Subsystem;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 
 /** Extend this class to have it automatically run tests in the integrated testing framework managed by {@link TestManager} @author H! */
@@ -12,6 +15,10 @@ public abstract class SubsystemBaseTestable extends SubsystemBase implements Tes
 
     protected boolean isTesting = false;
 
+    /** Registers the subsystem's class, so its test methods are found when the {@link TestManager} loads. */
+    public SubsystemBaseTestable() {
+        TestMethodCache.registerClass(getClass());
+    }
     
     /** <h3>CANNOT BE EXTENDED</h3> <p>This is to force certain logic to always be used. 
      * Use {@link SubsystemBaseTestable#doPeriodic()} for things that must run periodically.</p>
@@ -42,4 +49,10 @@ public abstract class SubsystemBaseTestable extends SubsystemBase implements Tes
     public void onTestStart() {
         TestManager.queueGroupToTest(this);
     }
+
+    /** Tests of a subsystem require the subsystem itself, so they won't run alongside other tests of it. */
+    @Override
+    public Set<Subsystem> getRequirements() {
+        return Set.of(this);
+    }
 }
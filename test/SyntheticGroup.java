@@ -0,0 +1,41 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.test;
+
+import java.util.Set;
+
+import edu.wpi.first.wpilibj2.command.Subsystem;
+
+/** A group of the given tests, with the given requirements or none, for suites built in code. */
+public class SyntheticGroup implements TestGroup {
+    private final String name;
+    private final Test[] tests;
+    private final Set<Subsystem> requirements;
+
+    public SyntheticGroup(String name, Test[] tests, Set<Subsystem> requirements) {
+        this.name = name;
+        this.tests = tests;
+        this.requirements = requirements;
+    }
+
+    public SyntheticGroup(String name, Test[] tests) {
+        this(name, tests, Set.of());
+    }
+
+    @Override
+    public Test[] getTests() {
+        return tests;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Set<Subsystem> getRequirements() {
+        return requirements;
+    }
+}
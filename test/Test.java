@@ -4,8 +4,13 @@
 
 package frc.robot.test;
 
+import java.util.concurrent.Future;
+
 /** Add your docs here. */
 public interface Test {
+    /** Returned by {@link #getDependencies()} for tests without dependencies, rather than a new empty array each time. */
+    public static final Test[] NO_DEPENDENCIES = new Test[0];
+
     /** The main body of the test. This will run periodically until the test throws an assertion error, 
      * or the {@link Test#isDone()} condition is met.
      */
@@ -23,7 +28,38 @@ public interface Test {
 
     public String getName();
 
-    
+    /**
+     * How long this test may run for, counted from {@link Test#setup()}. If the test is still running
+     * when it expires, the test is closed down and fails. By default, tests have no timeout.
+     */
+    public default Timeout getTimeout() {return null;}
+
+    /**
+     * Describes how far through the test is, such as which phase it is in. Included in the failure
+     * message when the test times out, so it is clear where it got stuck.
+     * 
+     * @return A short description of the test's progress, such as "in phase 2 of 3", or null if there is nothing to say
+     */
+    public default String describeProgress() {return null;}
+
+    /**
+     * Describes what the test found, such as the spread of what it measured. Used as the message of
+     * the result when the test succeeds, which otherwise has none.
+     * 
+     * @return A short description of the test's findings, or null if there is nothing to say
+     */
+    public default String describeResult() {return null;}
+
+    /**
+     * Checked after each cycle the test isn't done. If this returns a future which hasn't completed,
+     * such as the answer to {@link TestUtil#askUserBool(String)}, the test is parked: it isn't run again
+     * until the future completes, and other tests may run in the meantime. The test keeps its place
+     * in its group and its group's requirements while parked.
+     * 
+     * @return The future this test is waiting on, or null if it isn't waiting
+     */
+    public default Future<?> getAwaited() {return null;}
+
 
     /** 
      * <p><b>This method must always return the same thing, down to the refrences. That means
@@ -33,8 +69,10 @@ public interface Test {
      * default, it is assumed all tests must succeed before this test should run.
      * If you wish to change this behavior, see {@link Test#getDependencySuccessRequirements()}.</p>
      * 
+     * <p>Dependencies may belong to other test groups. They are read once, when the test groups are
+     * selected, and a test depended on by several others is still only run once.</p>
      */
-    public default Test[] getDependencies() {return new Test[0];};
+    public default Test[] getDependencies() {return NO_DEPENDENCIES;};
 
     /**
      * Should return an array corresponding to whether each test listed returned by {@link Test#getDependencies()}
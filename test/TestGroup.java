@@ -1,6 +1,24 @@
 package frc.robot.test;
 
+import java.util.Set;
+
+import edu.wpi.first.wpilibj2.command.Subsystem;
+
 public interface TestGroup {
     public Test[] getTests();
     public String getName();
+
+    /**
+     * The subsystems this group's tests use. Tests from groups which share a requirement are never
+     * run at the same time by the {@link TestManager}. By default, a group has no requirements, and
+     * so may run alongside any other group.
+     */
+    public default Set<Subsystem> getRequirements() {return Set.of();}
+
+    /**
+     * How long this group's tests may take altogether, counted from when its first test starts. When it
+     * expires, the test in progress fails, and any of the group's tests which haven't run are marked
+     * as not run. By default, groups have no timeout.
+     */
+    public default Timeout getTimeout() {return null;}
 }
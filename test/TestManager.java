@@ -4,31 +4,37 @@
 
 package frc.robot.test;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.function.LongSupplier;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj2.command.Subsystem;
 import frc.robot.Robot;
+import frc.robot.test.DependencyGraph.Node;
 import frc.robot.test.TestUtil.InstantTest;
+import frc.robot.test.TestMethodCache.TestMethod;
 import frc.robot.test.TestUtil.InstantTestMethod;
+import frc.robot.test.networking.AnswerPolicy;
+import frc.robot.test.networking.TestClient;
+import frc.robot.test.networking.UnansweredQuestionException;
 import frc.robot.test.networking.Workstation;
 
 /** A system which will run all tests queued to it and display their results. @author H! */
 public class TestManager {
     /* TODO:
-     * Make the test runner behave nicely if the testing is cut off halfway through
      * Other Utils
-     * 
-     * Paralalizable (<- spelled wrong):
      */
 
     public enum TestSuccess {
@@ -49,7 +55,7 @@ public class TestManager {
 
     /**
      * Stores the results of a test, that being whether it succeeded and any other message
-     * it may have provided.
+     * it may have provided, along with how long it took if it was run.
      * 
      * @author H!
      */
@@ -57,35 +63,225 @@ public class TestManager {
         public TestSuccess m_successResult;
         public String m_message;
 
+        /** The number of cycles the test was run for. */
+        public int m_cycles = 0;
+        /** The time from the test being ready to run until it finished, including any wait for its group or requirements. */
+        public long m_wallNanos = 0;
+        /** The time from the start of {@link Test#setup()} to the end of {@link Test#closedown()}. */
+        public long m_setupToClosedownNanos = 0;
+        /** How long each call to {@link Test#periodic()} took, or null if the test was never run. */
+        public LatencyHistogram m_periodicLatency = null;
+
+        /** @param message The message, where null (such as from an exception with none) is the same as "" */
         public TestResults(TestSuccess successResult, String message) {
             m_successResult = successResult;
-            m_message = message;
+            m_message = message == null ? "" : message;
         }
 
         public TestResults(TestSuccess successResult) {
             this(successResult, "");
         }
+
+        /** @return Whether timing was recorded, which is only the case for tests which were run. */
+        public boolean hasTiming() {
+            return m_periodicLatency != null;
+        }
+
+        /**
+         * @return The timing of the test as space separated {@code key=value} pairs, with all times in
+         * nanoseconds, or an empty string if the test was not run. {@code busy} is the time spent in
+         * {@link Test#periodic()}, and {@code hist} the counts of {@link #m_periodicLatency}.
+         */
+        public String getTimingSummary() {
+            if (!hasTiming()) {
+                return "";
+            }
+            return "cycles=" + m_cycles
+                + " wall=" + m_wallNanos
+                + " run=" + m_setupToClosedownNanos
+                + " busy=" + m_periodicLatency.getTotalNanos()
+                + " max=" + m_periodicLatency.getMaxNanos()
+                + " hist=" + m_periodicLatency.bucketsToString();
+        }
+
+        /**
+         * Sets the timing from a summary given by {@link #getTimingSummary()}, such as for a result
+         * received from another robot process. An empty summary leaves the timing unset.
+         *
+         * @param summary The timing summary
+         */
+        public void setTimingFromSummary(String summary) {
+            if (summary == null || summary.isEmpty()) {
+                m_periodicLatency = null;
+                return;
+            }
+            long busy = 0;
+            long max = 0;
+            String hist = "";
+            for (String pair : summary.split(" ")) {
+                int split = pair.indexOf('=');
+                if (split < 0) {
+                    throw new IllegalArgumentException("Malformed timing summary: \"" + summary + "\"");
+                }
+                String value = pair.substring(split + 1);
+                switch (pair.substring(0, split)) {
+                    case "cycles": m_cycles = Integer.parseInt(value); break;
+                    case "wall": m_wallNanos = Long.parseLong(value); break;
+                    case "run": m_setupToClosedownNanos = Long.parseLong(value); break;
+                    case "busy": busy = Long.parseLong(value); break;
+                    case "max": max = Long.parseLong(value); break;
+                    case "hist": hist = value; break;
+                    default: break; // Added by a newer version, so ignored
+                }
+            }
+            m_periodicLatency = new LatencyHistogram();
+            m_periodicLatency.restore(hist, busy, max);
+        }
+    }
+
+
+    /**
+     * The state of one {@link TestGroup} while it is being run. Each group runs its own tests one
+     * at a time, but several groups may be stepped in the same cycle when their requirements
+     * (see {@link TestGroup#getRequirements()}) do not overlap.
+     * 
+     * @author H!
+     */
+    protected static class GroupRunner {
+        public final TestGroup m_group;
+        /**
+         * The name the group's results are recorded under, read once so that recording results never calls
+         * back into the group. It is unique in the session, so may differ from the group's own name.
+         */
+        public final String m_name;
+        public final Set<Subsystem> m_requirements;
+        /** The index of each of {@link #m_requirements} among every requirement in the session, set when it is compiled. */
+        public int[] m_requirementIds = new int[0];
+        /** Tests of this group whose dependencies have all finished correctly, in the order they became ready. */
+        public final ArrayDeque<Node> m_ready = new ArrayDeque<Node>();
+        /** The test currently being run, or null if the group is between tests. */
+        public Node m_current = null;
+        /** The number of tests belonging to this group which have no result yet. */
+        public int m_unresolved = 0;
+        /** The number of cycles this group has spent running tests. */
+        public int m_cyclesActive = 0;
+        /** The last cycle this group ran a test in. */
+        public int m_lastCycleActive = -1;
+        /** Every test belonging to this group, including dependencies no group listed. */
+        public final List<Node> m_nodes = new ArrayList<Node>();
+        public final Timeout m_timeout;
+        /** When the group's first test was started, from the {@link TestManager#setClock(LongSupplier) clock}, or 0 if none has been. */
+        public long m_startNanos = 0;
+
+        public GroupRunner(TestGroup group, String name) {
+            m_group = group;
+            m_name = name;
+            m_requirements = group.getRequirements();
+            m_timeout = group.getTimeout();
+        }
+
+        public boolean isFinished() {
+            return m_unresolved == 0 && m_current == null;
+        }
+
+        /** Whether any of this group's requirements are locked, given whether each requirement is locked by its ID. */
+        public boolean conflictsWith(boolean[] locked) {
+            for (int id : m_requirementIds) {
+                if (locked[id]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /** Locks each of this group's requirements, given whether each requirement is locked by its ID. */
+        public void lockRequirements(boolean[] locked) {
+            for (int id : m_requirementIds) {
+                locked[id] = true;
+            }
+        }
     }
 
+    /**
+     * Statistics about how {@link TestManager#periodic()} used its time slice, when time slicing is
+     * enabled (see {@link TestManager#setTimeSlice(double)}).
+     */
+    public static class SliceStats {
+        /** The number of cycles tests were run in. */
+        public int m_cycles = 0;
+        /** The number of passes over the test groups, at least one each cycle. */
+        public long m_passes = 0;
+        /** The number of cycles where only one pass was made because the previous loop overran. */
+        public int m_deferredCycles = 0;
+        /** The number of cycles which stopped making passes because the slice was used up. */
+        public int m_exhaustedCycles = 0;
+        /** How long the last slice took, in nanoseconds. */
+        public long m_lastSliceNanos = 0;
+        /** How long each slice took. */
+        public final LatencyHistogram m_sliceLatency = new LatencyHistogram();
+
+        public void reset() {
+            m_cycles = 0;
+            m_passes = 0;
+            m_deferredCycles = 0;
+            m_exhaustedCycles = 0;
+            m_lastSliceNanos = 0;
+            m_sliceLatency.reset();
+        }
+    }
 
-    public static Map<String, Map<String, TestResults>> results = new HashMap<String, Map<String, TestResults>>();
-    protected static Map<Test, TestSuccess> testsRun = new HashMap<Test, TestSuccess>();
+    /** The name of the results group that the scheduling summary is reported under. */
+    public static final String SESSION_SUMMARY_GROUP = "Session Summary";
+
+    /** The results of the current session. Replaced rather than cleared by {@link #init()}, so snapshots taken of it stay valid. */
+    public static TestResultsStore results = new TestResultsStore();
 
     protected static List<TestGroup> groupsToTest = new ArrayList<TestGroup>();
-    protected static List<Test> testsToTest = new ArrayList<Test>();
+    protected static List<GroupRunner> groupRunners = new ArrayList<GroupRunner>();
+    /** The dependencies of every test in the session, compiled once the test groups are selected. */
+    protected static DependencyGraph dependencyGraph;
+    /**
+     * Whether each requirement of the session, by its ID (see {@link GroupRunner#m_requirementIds}), is
+     * required by a test in progress, or by a test started earlier in the current cycle. An array rather
+     * than a set, so that scheduling a cycle never allocates.
+     */
+    private static boolean[] lockedRequirements = new boolean[0];
+    /** The tests whose dependents are being released, kept between results so releasing never allocates. */
+    private static final ArrayDeque<Node> releasing = new ArrayDeque<Node>();
+
+    /** Whether groups which don't share requirements may run their tests in the same cycle. */
+    private static boolean runGroupsInParallel = true;
 
+    /** The fraction of the loop period tests may use each cycle, or 0 to run one pass per cycle. */
+    private static double timeSliceFraction = 0;
+    private static double loopPeriodSeconds = TimedRobot.kDefaultPeriod;
+    /** How late a loop may start, as a multiple of the period, before the previous loop counts as overrun. */
+    private static final double OVERRUN_TOLERANCE = 1.1;
+    private static long lastSliceStartNanos = 0;
+    private static final SliceStats sliceStats = new SliceStats();
 
-    protected static int testIndex = 0;
+    /** How long the tests of a session may take altogether, or null for no limit. */
+    private static Timeout sessionTimeout = null;
+    private static long sessionStartNanos = 0;
+    /** Where the times used for timeouts and test durations are read from, in nanoseconds. */
+    private static LongSupplier clock = System::nanoTime;
+
+    /** Where results are written as they are recorded, or null to keep them only in memory. */
+    private static ResultsJournal journal = null;
+    /** Whether tests which passed in an interrupted session are skipped by the next one. */
+    private static boolean resumeSessions = false;
 
     public static boolean testsFinished = false;
-    public static boolean testStarted = false;
     private static int initialPauseLength = 5;
     private static int initialPauseTimer = 0;
     protected static boolean testSelectionMade = false;
 
     protected static int cyclesRun = 0;
+    /** The sum of the cycles each finished group was active for, which is how long a serial run would take. */
+    protected static int serialCycleEstimate = 0;
+    protected static int groupsRun = 0;
 
-    protected static Workstation driverStationClient;
+    protected static TestClient driverStationClient;
     private static Future<boolean[]> selectedTestGroups;
 
 
@@ -104,35 +300,111 @@ public class TestManager {
         groupsToTest.add(toTest);
     }
 
+    /** @return The test groups queued so far this session, in the order they will be offered to the client. */
+    public static List<TestGroup> getQueuedGroups() {
+        return Collections.unmodifiableList(groupsToTest);
+    }
+
+    /**
+     * Sets whether test groups may run at the same time. When enabled (the default), a test from each
+     * group can run in the same cycle as long as no two running tests belong to groups which share a
+     * requirement. When disabled, groups are run strictly one after another.
+     * 
+     * @param parallel Whether to run non conflicting groups in parallel
+     */
+    public static void setRunGroupsInParallel(boolean parallel) {
+        runGroupsInParallel = parallel;
+    }
+
+    /**
+     * Enables time slicing. Rather than one pass over the test groups each cycle, passes are repeated
+     * until the given fraction of the loop period has been used, or nothing more can run. Each test
+     * still runs at most once per cycle, so extra passes only start tests which became ready during
+     * the cycle, such as the rest of a chain of {@link InstantTest}s. If the previous loop overran,
+     * only one pass is made, leaving the rest of the work for later cycles.
+     * 
+     * @param fraction The fraction of the loop period tests may use, such as 0.5, or 0 to disable
+     */
+    public static void setTimeSlice(double fraction) {
+        if (fraction < 0 || fraction > 1) {
+            throw new IllegalArgumentException("Time slice must be between 0 and 1 of the loop period, not " + fraction);
+        }
+        timeSliceFraction = fraction;
+    }
+
+    /**
+     * Sets the loop period the time slice is a fraction of. Only needed when the robot does not use
+     * {@link TimedRobot#kDefaultPeriod}.
+     * 
+     * @param seconds The period of the robot loop, in seconds
+     */
+    public static void setLoopPeriod(double seconds) {
+        if (seconds <= 0) {
+            throw new IllegalArgumentException("Loop period must be positive, not " + seconds);
+        }
+        loopPeriodSeconds = seconds;
+    }
+
+    /**
+     * Limits how long the tests of each session may take altogether, counted from when the test groups
+     * are selected. When it expires, every test in progress fails and every test which hasn't run is
+     * marked as not run, so the session ends.
+     * 
+     * @param timeout The timeout, or null for no limit
+     */
+    public static void setSessionTimeout(Timeout timeout) {
+        sessionTimeout = timeout;
+    }
+
+    /**
+     * Writes each result to a journal as soon as it is recorded, so the results of a session survive
+     * the robot restarting partway through.
+     * 
+     * @param resultsJournal The journal, normally {@code ResultsJournal.openDefault()}, or null to stop journaling
+     */
+    public static void setJournal(ResultsJournal resultsJournal) {
+        journal = resultsJournal;
+    }
+
+    /**
+     * Sets whether a session picks up where an interrupted one left off. When enabled, and the
+     * journal (see {@link #setJournal(ResultsJournal)}) holds a session that was cut off by a disable,
+     * brownout or restart, tests which passed in it are given their result again without being run,
+     * as long as their dependencies were also carried over. Every other test is run as usual.
+     * 
+     * @param resume Whether to resume interrupted sessions
+     */
+    public static void setResumeSessions(boolean resume) {
+        resumeSessions = resume;
+    }
+
+    /**
+     * Sets where the times used for timeouts and test durations are read from. By default this is
+     * {@link System#nanoTime()}, but in simulation it can be the simulated clock, so that a session
+     * stepped faster than real time (see {@link frc.robot.test.sim.HeadlessRunner}) times out and
+     * reports durations exactly as it would in real time. How long {@link Test#periodic()} takes, and
+     * time slicing, are always measured in real time.
+     * 
+     * @param nanoClock The current time in nanoseconds, such as {@code () -> RobotController.getFPGATime() * 1000}
+     */
+    public static void setClock(LongSupplier nanoClock) {
+        clock = nanoClock;
+    }
+
+    /** @return Statistics about the time slices used so far this session. */
+    public static SliceStats getSliceStats() {
+        return sliceStats;
+    }
+
+    /**
+     * @param group The group to get the tests of
+     * @return The group's tests, followed by a test for each of its {@link InstantTestMethod}s
+     */
     protected static Test[] getTestsFromGroup(TestGroup group) {
-        // WARNING: terribly cursed reflection, keep out
         List<Test> annotatedTests = new ArrayList<Test>();
-        try {
-            for (Method method : group.getClass().getMethods()) {
-                if (method.isAnnotationPresent(InstantTestMethod.class)) {
-                    InstantTestMethod testAnnotation = method.getAnnotation(InstantTestMethod.class);
-                    annotatedTests.add(new InstantTest(
-                        () -> {
-                            try {
-                                method.invoke(group);
-                            } catch (InvocationTargetException e) {
-                                if (e.getCause() instanceof AssertionError) {
-                                    throw (AssertionError) e.getCause();
-                                } else {
-                                    throw new RuntimeException(e.toString());
-                                }
-                            } catch (IllegalAccessException | IllegalArgumentException e) {
-                                throw new RuntimeException(e.toString());
-                            }
-                        }, 
-                        testAnnotation.name().length() > 0 ? testAnnotation.name() : method.getName()
-                    ));
-                }
-            }
-        } catch (IllegalArgumentException | SecurityException e) {
-            throw new RuntimeException(e.toString());
+        for (TestMethod method : TestMethodCache.getTestMethods(group.getClass())) {
+            annotatedTests.add(new InstantTest(() -> method.m_invoker.invoke(group), method.m_name));
         }
-        // This part is fine
         return addListToArray(group.getTests(), annotatedTests);
     }
 
@@ -142,29 +414,95 @@ public class TestManager {
      * @author H!
      */
     public static void init() {
+        closeDownTestsInProgress();
         groupsToTest.clear();
-        testsToTest.clear();
-        testIndex = 0;
+        groupRunners.clear();
+        dependencyGraph = null;
         initialPauseTimer = initialPauseLength;
         testsFinished = false;
         selectedTestGroups = new CompletableFuture<>();
         testSelectionMade = false;
         cyclesRun = 0;
-        results = new HashMap<String, Map<String, TestResults>>();
-        testsRun = new HashMap<Test, TestSuccess>();
+        serialCycleEstimate = 0;
+        groupsRun = 0;
+        lastSliceStartNanos = 0;
+        sliceStats.reset();
+        results = new TestResultsStore();
     }
 
+    /**
+     * Should be run when test mode is left. If tests were cut off partway through, those in progress are
+     * closed down, and the results of those which finished are sent to the client. The connection to the
+     * client is kept either way.
+     */
     public static void onDisable() {
-        driverStationClient.close();
-        driverStationClient = new Workstation();
+        closeDownTestsInProgress();
+        if (testSelectionMade && !testsFinished) {
+            displayTestResults();
+            testsFinished = true;
+        } else {
+            driverStationClient.abandonSession();
+        }
+    }
+
+    /**
+     * Closes down every test in progress, such as when test mode is left partway through a session.
+     * Tests running on threads of their own, such as a {@link TestUtil.HighRateTest}, would otherwise
+     * carry on after test mode ends. The tests are left without results.
+     */
+    private static void closeDownTestsInProgress() {
+        for (int i = 0; i < groupRunners.size(); i++) {
+            GroupRunner runner = groupRunners.get(i);
+            if (runner.m_current != null) {
+                runner.m_current.m_test.closedown();
+                runner.m_current = null;
+            }
+        }
     }
 
     /**
      * Should be run as soon as possible, and only once. Configures some things such
-     * as starting the TCP server. These won't happen until the first method call otherwise.
+     * as starting the TCP server, and finding the test methods of the test groups created so far.
+     * These won't happen until the first method call otherwise.
      */
     public static void load() {
-        driverStationClient = new Workstation();
+        TestMethodCache.discoverKnownClasses();
+        if (driverStationClient == null) {
+            driverStationClient = new Workstation();
+        }
+    }
+
+    /**
+     * Uses the given client instead of starting a {@link Workstation}, such as to run tests with nobody
+     * connected. Must be run before {@link #load()}.
+     * 
+     * @param client The client which selects test groups, answers questions and receives results
+     */
+    public static void useClient(TestClient client) {
+        if (driverStationClient != null) {
+            throw new IllegalStateException("The test client must be chosen before TestManager.load()");
+        }
+        driverStationClient = client;
+    }
+
+    /**
+     * A version of {@link #load()} which takes its test methods from a registry generated at compile
+     * time, instead of finding them by reflection.
+     * 
+     * @param registry The registry, normally {@code new GeneratedTestRegistry()}
+     */
+    public static void load(TestRegistry registry) {
+        TestMethodCache.loadRegistry(registry);
+        load();
+    }
+
+    /**
+     * Sets known answers to user questions, so tests can run unattended. Must be run after {@link #load()}.
+     * 
+     * @param policy The answer policy, such as {@code AnswerPolicy.loadDefault()}, or null to ask the client every question
+     */
+    public static void setAnswerPolicy(AnswerPolicy policy) {
+        driverStationClient.setAnswerPolicy(policy);
     }
 
     /**
@@ -201,127 +539,465 @@ public class TestManager {
                 }
 
                 testSelectionMade = true;
+                compileSession();
             }
             return;
         }
 
-        cyclesRun++;
-        String[] testGroupNames = new String[groupsToTest.size()];
-        for (int i = 0; i < groupsToTest.size(); i++) {
-            testGroupNames[i] = groupsToTest.get(i).getName();
+        if (groupRunners.size() > 0 && sessionTimeout != null
+                && sessionTimeout.hasExpired(cyclesRun, clock.getAsLong() - sessionStartNanos)) {
+            String reason = "Session timed out after " + sessionTimeout;
+            System.out.println(reason);
+            for (GroupRunner runner : groupRunners) {
+                expireGroup(runner, reason);
+            }
+            removeFinishedRunners();
         }
 
-        if (groupsToTest.size() > 0) {
-            results.putIfAbsent(groupsToTest.get(0).getName(), new HashMap<String, TestResults>());
-            runTests(groupsToTest.get(0));
-
+        if (groupRunners.size() > 0) {
+            cyclesRun++;
+            if (timeSliceFraction > 0) {
+                runTimeSlice();
+            } else {
+                runGroups();
+            }
         } else {
             if (!testsFinished) {
-                displayTestResults();;
+                reportSchedulingSummary();
+                if (journal != null) {
+                    journal.endSession();
+                }
+                displayTestResults();
                 testsFinished = true;
             }
         }
     }
 
     /**
-     * Runs one cycle of the current test on the given test group. Should be run periodically.
-     * When all tests are done, removes this element from {@link #groupsToTest} and resets {@link #testIndex}
+     * Builds the runners and dependency graph for the selected groups. Tests which can never run, or
+     * which passed in the interrupted session being resumed, are given their results immediately, and
+     * every other test with no dependencies is readied.
+     */
+    protected static void compileSession() {
+        sessionStartNanos = clock.getAsLong();
+        // Read before the journal is cleared for this session
+        boolean resuming = journal != null && resumeSessions && journal.hasInterruptedSession();
+        List<Node> carried = new ArrayList<Node>();
+        Set<String> groupNames = new HashSet<String>();
+        for (TestGroup group : groupsToTest) {
+            GroupRunner runner = new GroupRunner(group, uniqueGroupName(group.getName(), groupNames));
+            results.addGroup(runner.m_name);
+            groupRunners.add(runner);
+        }
+        lockedRequirements = new boolean[indexRequirements(groupRunners)];
+
+        dependencyGraph = new DependencyGraph(groupRunners);
+        results.reserve(dependencyGraph.getTopologicalOrder().size() + dependencyGraph.getRejected().size());
+        if (resuming) {
+            for (Node node : dependencyGraph.getTopologicalOrder()) {
+                if (journal.passedInInterruptedSession(node.m_owner.m_name, node.m_resultName)) {
+                    carried.add(node);
+                }
+            }
+        }
+        if (journal != null) {
+            journal.beginSession();
+        }
+
+        for (Node node : dependencyGraph.getRejected()) {
+            System.out.println("Test \"" + node.m_name + "\" rejected: " + node.m_rejection);
+            record(node, new TestResults(TestSuccess.NOTRUN, node.m_rejection));
+        }
+        for (Node node : dependencyGraph.getRejected()) {
+            releaseDependents(node);
+        }
+        // In topological order, so a test is only carried over if its dependencies were
+        for (Node node : carried) {
+            if (!node.isResolved() && node.m_pendingDependencies == 0) {
+                node.m_owner.m_ready.remove(node); // Readied if a dependency was carried over before it
+                resolve(node, new TestResults(TestSuccess.SUCCESS, "Passed before the session was resumed"));
+            }
+        }
+        if (!carried.isEmpty()) {
+            System.out.println("Resumed an interrupted session, skipping tests which passed");
+        }
+
+        // Tests with dependencies are readied as the last of them is resolved
+        for (Node node : dependencyGraph.getTopologicalOrder()) {
+            if (!node.isResolved() && node.m_dependencies.length == 0) {
+                ready(node);
+            }
+        }
+    }
+
+    /**
+     * Results are recorded by group name, so a group named the same as one before it, such as a second
+     * instance of a subsystem, or named {@value #SESSION_SUMMARY_GROUP}, is given a name of its own, such
+     * as "Drive (2)".
+     *
+     * @param names The names given so far, which the returned name is added to
+     */
+    private static String uniqueGroupName(String name, Set<String> names) {
+        String unique = name;
+        for (int copy = 2; unique.equals(SESSION_SUMMARY_GROUP) || names.contains(unique); copy++) {
+            unique = name + " (" + copy + ")";
+        }
+        names.add(unique);
+        return unique;
+    }
+
+    /**
+     * Makes passes over the groups until the time slice is used up, nothing more can run this cycle, or
+     * another pass would likely not fit. Only one pass is made if the previous loop overran.
+     */
+    protected static void runTimeSlice() {
+        long start = System.nanoTime();
+        long budgetNanos = (long) (loopPeriodSeconds * timeSliceFraction * 1E9);
+        long periodNanos = (long) (loopPeriodSeconds * 1E9);
+        boolean overran = sliceStats.m_lastSliceNanos > budgetNanos
+            || (lastSliceStartNanos != 0 && start - lastSliceStartNanos > periodNanos * OVERRUN_TOLERANCE);
+        lastSliceStartNanos = start;
+
+        boolean ranAny = runGroups();
+        long passes = 1;
+        long passNanos = System.nanoTime() - start;
+        long elapsed = passNanos;
+        if (overran) {
+            sliceStats.m_deferredCycles++;
+        } else {
+            while (ranAny && !groupRunners.isEmpty()) {
+                if (elapsed + passNanos > budgetNanos) {
+                    sliceStats.m_exhaustedCycles++;
+                    break;
+                }
+                long passStart = System.nanoTime();
+                ranAny = runGroups();
+                passes++;
+                long now = System.nanoTime();
+                passNanos = now - passStart;
+                elapsed = now - start;
+            }
+        }
+
+        sliceStats.m_cycles++;
+        sliceStats.m_passes += passes;
+        sliceStats.m_lastSliceNanos = elapsed;
+        sliceStats.m_sliceLatency.record(elapsed);
+    }
+
+    /**
+     * Runs one cycle of every group that is allowed to run this cycle. A group with a test in progress
+     * always runs, and holds its requirements until that test finishes. A group with a ready test
+     * may start it only if none of its requirements are held, with groups queued earlier getting the
+     * first chance. When groups aren't run in parallel, only one test may be in progress at a time.
+     * Finished groups are removed from {@link #groupRunners}.
      * 
-     * @param testGroup The test group to run the tests of
+     * <p>This may be run more than once per cycle when time slicing, but a test which already ran
+     * this cycle is not run again until the next.</p>
      * 
-     * @author H!
+     * <p>A test waiting on a future (see {@link Test#getAwaited()}) is parked: it isn't run until the
+     * future completes, and while parked it doesn't count as in progress when groups aren't run in
+     * parallel. It still holds its group and requirements.</p>
+     * 
+     * @return Whether any test was run
      */
-    protected static void runTests(TestGroup testGroup) {
-        if (testsToTest.size() == 0) {
-            testsToTest = new ArrayList<Test>(Arrays.asList(getTestsFromGroup(testGroup)));
-        }
-
-        if (!testStarted) {
-            /* DEPENDENCY LOGIC:
-             * 
-             * All done, all correct         -> Run test
-             * All done, not all correct     -> Mark test as not run, and remove it from the queue
-             * Not all done, all correct     -> Buffer with dependencies, move test to the back of the queue
-             * Not all done, not all correct -> Mark test as not run, and remove it from the queue
-             * 
-             * A dependency being "correct" means that its result (success/failure) matched the result the main test required of the dependency.
-             */
-            // Check if dependencies are already done:
-            boolean allDependenciesDone = true;
-            boolean allDependenciesCorrect = true;
-            for (int i = 0; i < testsToTest.get(0).getDependencies().length; i++) {
-                Test test = testsToTest.get(0).getDependencies()[i];
-                TestSuccess isRun = testsRun.get(test);
-                if (isRun == null) {
-                    allDependenciesDone = false;
-                } else if (isRun == TestSuccess.FAIL && testsToTest.get(0).getDependencySuccessRequirements()[i] == true) {
-                    allDependenciesCorrect = false;
-                    break; // We can stop the loop if any are wrong, because no matter what else happens, if one dependency is wrong, we have to cancel the test
-                } else if (isRun == TestSuccess.SUCCESS && testsToTest.get(0).getDependencySuccessRequirements()[i] == false) {
-                    allDependenciesCorrect = false;
-                    break; // We can stop the loop if any are wrong, because no matter what else happens, if one dependency is wrong, we have to cancel the test
-                } else if (isRun == TestSuccess.NOTRUN) {
-                    allDependenciesCorrect = false;
-                    break; // We can stop the loop if any are wrong, because no matter what else happens, if one dependency is wrong, we have to cancel the test
-                }
+    protected static boolean runGroups() {
+        Arrays.fill(lockedRequirements, false);
+        boolean testInProgress = false;
+        boolean ranAny = false;
+        // Indexed rather than iterated, so that no iterators are allocated
+        for (int i = 0; i < groupRunners.size(); i++) {
+            GroupRunner runner = groupRunners.get(i);
+            enforceTimeouts(runner);
+            if (runner.m_current != null) {
+                runner.lockRequirements(lockedRequirements);
+                // A parked test keeps its requirements, but doesn't stop other groups running when serial
+                testInProgress |= runner.m_current.m_awaiting == null;
             }
+        }
 
-            if (!allDependenciesCorrect) {
-                results.get(groupsToTest.get(0).getName()).put(testsToTest.get(0).getName(), new TestResults(TestSuccess.NOTRUN, "Dependencies Not Correct"));
-                testsRun.put(testsToTest.remove(0), TestSuccess.NOTRUN);
-                if (testsToTest.size() == 0) {
-                    groupsToTest.remove(0);
+        for (int i = 0; i < groupRunners.size(); i++) {
+            GroupRunner runner = groupRunners.get(i);
+            if (runner.m_current == null) {
+                if (runner.m_ready.isEmpty()) {
+                    continue; // Finished, or waiting on a dependency from another group
                 }
-                testStarted = false;
-                return;
-            } else if (!allDependenciesDone) {
-                for (Test test : testsToTest.get(0).getDependencies()) {
-                    if (!testsRun.containsKey(test) && !testsToTest.contains(test)) {
-                        testsToTest.add(1, test);
-                    }
+                if (runGroupsInParallel ? runner.conflictsWith(lockedRequirements) : testInProgress) {
+                    continue;
+                }
+                runner.lockRequirements(lockedRequirements);
+                testInProgress = true;
+                startTest(runner);
+            } else if (runner.m_current.m_lastCycleRun == cyclesRun) {
+                continue;
+            } else if (runner.m_current.m_awaiting != null) {
+                if (!runner.m_current.m_awaiting.isDone()) {
+                    markActive(runner);
+                    continue;
                 }
+                if (!runGroupsInParallel && testInProgress) {
+                    continue; // Resumes once the test in progress finishes
+                }
+                runner.m_current.m_awaiting = null;
+                testInProgress = true;
+            }
+            runTests(runner);
+            ranAny = true;
+        }
+
+        removeFinishedRunners();
+        return ranAny;
+    }
 
-                testsToTest.add(testsToTest.remove(0));
-                return; // Return to this method next cycle now that the test list has been updated
+    /** Removes finished groups from {@link #groupRunners}, counting them towards the scheduling summary. */
+    private static void removeFinishedRunners() {
+        int kept = 0;
+        for (int i = 0; i < groupRunners.size(); i++) {
+            GroupRunner runner = groupRunners.get(i);
+            if (runner.isFinished()) {
+                serialCycleEstimate += runner.m_cyclesActive;
+                groupsRun++;
+            } else {
+                groupRunners.set(kept++, runner);
             }
-            testsToTest.get(0).setup();
         }
-        runTest(testsToTest.get(0));
+        while (groupRunners.size() > kept) {
+            groupRunners.remove(groupRunners.size() - 1);
+        }
+    }
+
+    /**
+     * Gives every requirement of the given groups an ID, so that locking requirements while scheduling
+     * is only a matter of setting flags.
+     *
+     * @return The number of distinct requirements
+     */
+    private static int indexRequirements(List<GroupRunner> runners) {
+        Map<Subsystem, Integer> ids = new HashMap<Subsystem, Integer>();
+        for (GroupRunner runner : runners) {
+            runner.m_requirementIds = new int[runner.m_requirements.size()];
+            int i = 0;
+            for (Subsystem requirement : runner.m_requirements) {
+                runner.m_requirementIds[i++] = ids.computeIfAbsent(requirement, (subsystem) -> ids.size());
+            }
+        }
+        return ids.size();
+    }
+
+    /**
+     * Fails the group's test in progress if it has run out of time, or ends the whole group if the
+     * group has. Timeouts are checked before each cycle, so a test with a timeout of N cycles runs at
+     * most N cycles. Cycles a test spends parked count towards its timeout too.
+     */
+    private static void enforceTimeouts(GroupRunner runner) {
+        if (runner.m_timeout != null && runner.m_startNanos != 0
+                && runner.m_timeout.hasExpired(runner.m_cyclesActive, clock.getAsLong() - runner.m_startNanos)) {
+            expireGroup(runner, "Group timed out after " + runner.m_timeout);
+            return;
+        }
+
+        Node node = runner.m_current;
+        if (node != null && node.m_timeout != null && node.m_lastCycleRun != cyclesRun
+                && node.m_timeout.hasExpired(cyclesRun - node.m_startCycle, clock.getAsLong() - node.m_startNanos)) {
+            failTimedOut(runner, "Timed out after " + node.m_timeout);
+        }
+    }
+
+    /** Closes down the group's test in progress and fails it, saying how far it got. */
+    private static void failTimedOut(GroupRunner runner, String reason) {
+        String progress = runner.m_current.m_test.describeProgress();
+        if (progress == null && runner.m_current.m_awaiting != null) {
+            progress = "while waiting";
+        }
+        System.out.println("Test \"" + runner.m_current.m_name + "\" " + reason.toLowerCase());
+        onTestDone(runner, new TestResults(TestSuccess.FAIL, progress != null ? reason + ", " + progress : reason));
+    }
+
+    /**
+     * Ends a group early. Its test in progress fails, and every other test of the group without a
+     * result is marked as not run, along with tests in other groups depending on them.
+     */
+    private static void expireGroup(GroupRunner runner, String reason) {
+        if (runner.m_current != null) {
+            failTimedOut(runner, reason);
+        }
+        for (Node node : runner.m_nodes) {
+            if (!node.isResolved()) {
+                resolve(node, new TestResults(TestSuccess.NOTRUN, reason));
+            }
+        }
+        runner.m_ready.clear();
+    }
+
+    /** Adds a test whose dependencies have all finished correctly to its group's ready queue. */
+    private static void ready(Node node) {
+        node.m_readyNanos = clock.getAsLong();
+        node.m_owner.m_ready.add(node);
+    }
+
+    /** Takes the next ready test of the group and sets it up. */
+    protected static void startTest(GroupRunner runner) {
+        runner.m_current = runner.m_ready.poll();
+        runner.m_current.m_startNanos = clock.getAsLong();
+        runner.m_current.m_startCycle = cyclesRun;
+        if (runner.m_startNanos == 0) {
+            runner.m_startNanos = runner.m_current.m_startNanos;
+        }
+        runner.m_current.m_test.setup();
+    }
+
+    /**
+     * Runs one cycle of the current test on the given test group. Should be run periodically.
+     * When all of the group's tests are done, {@link GroupRunner#isFinished()} becomes true.
+     * 
+     * @param runner The runner of the test group to run the tests of
+     * 
+     * @author H!
+     */
+    protected static void runTests(GroupRunner runner) {
+        markActive(runner);
+        runTest(runner, runner.m_current.m_test);
+    }
+
+    /** Counts the current cycle towards the cycles the group has been active for, once. */
+    private static void markActive(GroupRunner runner) {
+        if (runner.m_lastCycleActive != cyclesRun) {
+            runner.m_lastCycleActive = cyclesRun;
+            runner.m_cyclesActive++;
+        }
+    }
+
+    /**
+     * Records the result of a test, and updates the tests that depend on it.
+     * 
+     * <p>DEPENDENCY LOGIC:
+     * A dependency being "correct" means that its result (success/failure) matched the result the
+     * dependent test required of the dependency. A dependency which was not run is never correct.
+     * <ul>
+     * <li>Dependency correct, others still pending -> Keep waiting</li>
+     * <li>Dependency correct, none still pending   -> Ready the test in its group</li>
+     * <li>Dependency not correct                   -> Mark the test as not run, and cascade to its dependents</li>
+     * </ul></p>
+     * 
+     * @param node The test which finished
+     * @param result Its result
+     */
+    protected static void resolve(Node node, TestResults result) {
+        record(node, result);
+        releaseDependents(node);
+    }
+
+    /** Readies or cancels the dependents of a test which has just been given its result. */
+    private static void releaseDependents(Node node) {
+        releasing.add(node);
+
+        while (!releasing.isEmpty()) {
+            Node dependency = releasing.poll();
+            for (int i = 0; i < dependency.m_dependents.size(); i++) {
+                Node dependent = dependency.m_dependents.get(i);
+                if (dependent.isResolved()) {
+                    continue;
+                }
+                if (!dependent.acceptsResultOf(dependency)) {
+                    record(dependent, new TestResults(TestSuccess.NOTRUN, "Dependencies Not Correct"));
+                    releasing.add(dependent);
+                } else if (--dependent.m_pendingDependencies == 0) {
+                    ready(dependent);
+                }
+            }
+        }
+    }
+
+    private static void record(Node node, TestResults result) {
+        node.m_result = result.m_successResult;
+        node.m_owner.m_unresolved--;
+        results.put(node.m_owner.m_name, node.m_resultName, result);
+        if (journal != null) {
+            journal.recordResult(node.m_owner.m_name, node.m_resultName, result);
+        }
+        driverStationClient.publishResult(node.m_owner.m_name, node.m_resultName, result);
     }
 
     /** Runs all logic that must run when a tests finishes.
      * This involves managing resetting counters and preparing the next tests.
      */
-    public static void onTestDone(Test test) {
-        test.closedown();
-        testsToTest.remove(0);
-        if (testsToTest.size() == 0) {
-            groupsToTest.remove(0);
-        }
-        testStarted = false;
+    public static void onTestDone(GroupRunner runner, TestResults result) {
+        Node node = runner.m_current;
+        node.m_test.closedown();
+        long end = clock.getAsLong();
+        runner.m_current = null;
+
+        result.m_cycles = node.m_cycles;
+        result.m_wallNanos = end - node.m_readyNanos;
+        result.m_setupToClosedownNanos = end - node.m_startNanos;
+        result.m_periodicLatency = node.m_periodicLatency;
+        resolve(node, result);
     }
 
     /**
      * Logic to run one cycle of a test. Should be run periodically to perform the test.
      * When done, increments to the next test.
      * 
+     * @param runner The runner of the group the test is being run for
      * @param test The test to run
      * 
      * @author H!
      */
-    protected static void runTest(Test test) {
-        testStarted = true;
+    protected static void runTest(GroupRunner runner, Test test) {
+        Node node = runner.m_current;
+        node.m_cycles++;
+        node.m_lastCycleRun = cyclesRun;
+        long start = System.nanoTime();
         try {
-            test.periodic();
+            try {
+                test.periodic();
+            } finally {
+                node.m_periodicLatency.record(System.nanoTime() - start);
+            }
             if (test.isDone()) {
-                results.get(groupsToTest.get(0).getName()).put(test.getName(), new TestResults(TestSuccess.SUCCESS));
-                testsRun.put(test, TestSuccess.SUCCESS);
-                onTestDone(test);
+                String findings = test.describeResult();
+                onTestDone(runner, findings != null ? new TestResults(TestSuccess.SUCCESS, findings) : new TestResults(TestSuccess.SUCCESS));
+            } else {
+                Future<?> awaited = test.getAwaited();
+                if (awaited != null && !awaited.isDone()) {
+                    node.m_awaiting = awaited;
+                }
             }
         } catch (AssertionError e) {
-            results.get(groupsToTest.get(0).getName()).put(test.getName(), new TestResults(TestSuccess.FAIL, e.getMessage()));
-            testsRun.put(test, TestSuccess.FAIL);
-            onTestDone(test);
+            onTestDone(runner, new TestResults(TestSuccess.FAIL, e.getMessage()));
+        } catch (UnansweredQuestionException e) {
+            onTestDone(runner, new TestResults(e.m_result, e.getMessage()));
+        }
+    }
+
+    /**
+     * Adds a summary of how long the session took to the results, compared to how long it would have
+     * taken to run every group one after another.
+     */
+    protected static void reportSchedulingSummary() {
+        double speedup = cyclesRun > 0 ? (double) serialCycleEstimate / cyclesRun : 1.0;
+        String summary = String.format(
+            "Ran %d groups in %d cycles, serial estimate %d cycles (%.2fx speedup)",
+            groupsRun, cyclesRun, serialCycleEstimate, speedup
+        );
+        System.out.println(summary);
+
+        TestResults summaryResult = new TestResults(TestSuccess.SUCCESS, summary);
+        results.put(SESSION_SUMMARY_GROUP, "Scheduling", summaryResult);
+        driverStationClient.publishResult(SESSION_SUMMARY_GROUP, "Scheduling", summaryResult);
+
+        if (sliceStats.m_cycles > 0) {
+            String sliceSummary = String.format(
+                "%d passes in %d cycles (%.2f per cycle), %d deferred after an overrun, %d out of time, slice p99 under %.2f ms, max %.2f ms",
+                sliceStats.m_passes, sliceStats.m_cycles, (double) sliceStats.m_passes / sliceStats.m_cycles,
+                sliceStats.m_deferredCycles, sliceStats.m_exhaustedCycles,
+                sliceStats.m_sliceLatency.getQuantileUpperBoundNanos(0.99) / 1E6, sliceStats.m_sliceLatency.getMaxNanos() / 1E6
+            );
+            System.out.println(sliceSummary);
+
+            TestResults sliceResult = new TestResults(TestSuccess.SUCCESS, sliceSummary);
+            results.put(SESSION_SUMMARY_GROUP, "Time Slicing", sliceResult);
+            driverStationClient.publishResult(SESSION_SUMMARY_GROUP, "Time Slicing", sliceResult);
         }
     }
 
@@ -329,7 +1005,7 @@ public class TestManager {
      * @author H!
      */
     public static void displayTestResults() {
-        driverStationClient.publishResults(results);
+        driverStationClient.publishResults(results.snapshot());
     }
 
 
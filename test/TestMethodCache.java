@@ -0,0 +1,187 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.test;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import frc.robot.test.TestUtil.InstantTestMethod;
+
+/**
+ * Finds the methods of a {@link TestGroup} annotated with {@link InstantTestMethod}, once per class.
+ * Each method is bound to an {@link Invoker} when it is found, so running it later costs about as
+ * much as a direct call, instead of going through {@link Method#invoke(Object, Object...)}.
+ */
+public class TestMethodCache {
+
+    /** Calls a bound test method on a group. */
+    @FunctionalInterface
+    public interface Invoker {
+        public void invoke(Object group);
+    }
+
+    /** A test method found on a test group class. */
+    public static class TestMethod {
+        public final String m_name;
+        public final Invoker m_invoker;
+
+        public TestMethod(String name, Invoker invoker) {
+            m_name = name;
+            m_invoker = invoker;
+        }
+    }
+
+    private static final Map<Class<?>, TestMethod[]> cache = new HashMap<Class<?>, TestMethod[]>();
+    private static final Set<Class<?>> knownClasses = new LinkedHashSet<Class<?>>();
+    private static boolean knownClassesDiscovered = false;
+    private static long discoveryNanos = 0;
+    private static boolean registryLoaded = false;
+
+    // Prevent instantiating
+    private TestMethodCache() {}
+
+    /**
+     * Makes a test group class known to the cache, so its methods are found by {@link #discoverKnownClasses()}
+     * instead of when it is first tested. Classes registered after that are found immediately, and
+     * classes already registered are ignored, so each instance of a group may register its class.
+     *
+     * @param groupClass The class of a test group
+     */
+    public static void registerClass(Class<?> groupClass) {
+        if (knownClasses.add(groupClass) && knownClassesDiscovered) {
+            getTestMethods(groupClass);
+        }
+    }
+
+    /** Finds the test methods of every class registered so far. Run by {@link TestManager#load()}. */
+    public static void discoverKnownClasses() {
+        for (Class<?> groupClass : knownClasses) {
+            getTestMethods(groupClass);
+        }
+        knownClassesDiscovered = true;
+        System.out.println("Discovered test methods of " + cache.size() + " classes in "
+            + String.format("%.3f", discoveryNanos / 1E6) + " ms");
+    }
+
+    /**
+     * Fills the cache from a registry generated at compile time. Registered classes, and their subclasses
+     * which declare no test methods of their own, are then never searched by reflection.
+     *
+     * @param registry The registry to use
+     */
+    public static void loadRegistry(TestRegistry registry) {
+        cache.putAll(registry.getTestMethods());
+        registryLoaded = true;
+    }
+
+    /**
+     * @param groupClass The class of a test group
+     * @return The bound test methods of the class, which are found the first time it is seen
+     */
+    public static TestMethod[] getTestMethods(Class<?> groupClass) {
+        TestMethod[] methods = cache.get(groupClass);
+        if (methods == null && registryLoaded) {
+            // Classes with test methods are always listed, so an unlisted one has the same methods as its superclass
+            for (Class<?> superclass = groupClass.getSuperclass(); superclass != null; superclass = superclass.getSuperclass()) {
+                if (cache.containsKey(superclass)) {
+                    methods = cache.get(superclass);
+                    cache.put(groupClass, methods);
+                    break;
+                }
+            }
+        }
+        if (methods == null) {
+            long start = System.nanoTime();
+            methods = discover(groupClass);
+            discoveryNanos += System.nanoTime() - start;
+            cache.put(groupClass, methods);
+        }
+        return methods;
+    }
+
+    /** Removes a class from the cache, so it is searched by reflection again when next seen. Used to measure discovery. */
+    static void forget(Class<?> groupClass) {
+        cache.remove(groupClass);
+    }
+
+    /** @return The total time spent finding and binding test methods, in nanoseconds. */
+    public static long getDiscoveryNanos() {
+        return discoveryNanos;
+    }
+
+    private static TestMethod[] discover(Class<?> groupClass) {
+        // WARNING: terribly cursed reflection, keep out
+        List<TestMethod> out = new ArrayList<TestMethod>();
+        for (Method method : groupClass.getMethods()) {
+            if (!method.isAnnotationPresent(InstantTestMethod.class)) {
+                continue;
+            }
+            if (method.getParameterCount() != 0) {
+                throw new IllegalArgumentException("@InstantTestMethod " + groupClass.getName() + "." + method.getName() + " must not take parameters");
+            }
+
+            InstantTestMethod testAnnotation = method.getAnnotation(InstantTestMethod.class);
+            String name = testAnnotation.name().length() > 0 ? testAnnotation.name() : method.getName();
+            out.add(new TestMethod(name, bind(method)));
+        }
+        return out.toArray(new TestMethod[0]);
+    }
+
+    /**
+     * Binds a method to an {@link Invoker}. A generated lambda is preferred, as it is as fast as a
+     * direct call. If the method can't be reached that way (such as a public method of a package
+     * private class), it is called through its method handle instead.
+     */
+    private static Invoker bind(Method method) {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle handle;
+        try {
+            method.setAccessible(true);
+            handle = lookup.unreflect(method);
+        } catch (IllegalAccessException | RuntimeException e) {
+            throw new RuntimeException(e.toString());
+        }
+
+        if (!Modifier.isStatic(method.getModifiers())) {
+            try {
+                CallSite site = LambdaMetafactory.metafactory(
+                    lookup,
+                    "invoke",
+                    MethodType.methodType(Invoker.class),
+                    MethodType.methodType(void.class, Object.class),
+                    handle,
+                    MethodType.methodType(void.class, method.getDeclaringClass())
+                );
+                return (Invoker) site.getTarget().invokeExact();
+            } catch (Throwable e) {
+                // Fall through to the method handle
+            }
+        }
+
+        final MethodHandle invoker = Modifier.isStatic(method.getModifiers())
+            ? MethodHandles.dropArguments(handle.asType(MethodType.methodType(void.class)), 0, Object.class)
+            : handle.asType(MethodType.methodType(void.class, Object.class));
+        return (group) -> {
+            try {
+                invoker.invokeExact(group);
+            } catch (AssertionError | RuntimeException e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new RuntimeException(e.toString());
+            }
+        };
+    }
+}
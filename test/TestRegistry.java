@@ -0,0 +1,19 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.test;
+
+import java.util.Map;
+
+import frc.robot.test.TestMethodCache.TestMethod;
+
+/**
+ * A listing of every test group class and its {@link TestUtil.InstantTestMethod}s, known ahead of time.
+ * Normally implemented by the {@code GeneratedTestRegistry} written by the Ammeter annotation processor,
+ * and passed to {@link TestManager#load(TestRegistry)} so no test methods are found by reflection.
+ */
+public interface TestRegistry {
+    /** @return The test methods of each registered test group class, bound to direct calls. */
+    public Map<Class<?>, TestMethod[]> getTestMethods();
+}
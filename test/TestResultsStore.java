@@ -0,0 +1,232 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import frc.robot.test.TestManager.TestResults;
+import frc.robot.test.TestManager.TestSuccess;
+
+/**
+ * The results of a session, in the order they were recorded. Each result is given a stable ID, which
+ * is its position in that order, and is never replaced: recording a second result for the same test
+ * of a group is an error rather than silently overwriting the first.
+ *
+ * <p>Results are only recorded by the robot loop, but may be read from any thread through a
+ * {@link Snapshot}. Recorded results are never moved or changed, so taking a snapshot is constant
+ * time and never blocks the robot loop.</p>
+ */
+public class TestResultsStore {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int STATUS_COUNT = TestSuccess.values().length;
+
+    /** One recorded result. */
+    public static class Entry {
+        /** The position of this result in the order results were recorded. */
+        public final int m_id;
+        public final int m_groupIndex;
+        public final String m_group;
+        public final String m_name;
+        public final TestResults m_result;
+        /** The ID of the next result of the same group, or -1 if there is none yet. */
+        private int m_nextInGroup = -1;
+
+        private Entry(int id, int groupIndex, String group, String name, TestResults result) {
+            m_id = id;
+            m_groupIndex = groupIndex;
+            m_group = group;
+            m_name = name;
+            m_result = result;
+        }
+    }
+
+    /** The state of one group which only the robot loop uses. */
+    private static class Group {
+        final Map<String, Integer> m_ids = new HashMap<String, Integer>();
+        final int[] m_counts = new int[STATUS_COUNT];
+        int m_lastId = -1;
+    }
+
+    /**
+     * The results as they were when the snapshot was taken. Later results are never visible in it, even
+     * though it shares storage with the store.
+     */
+    public static class Snapshot {
+        private final Entry[] entries;
+        private final int size;
+        private final String[] groupNames;
+        private final int[] firstInGroup;
+        private final int groupCount;
+
+        private Snapshot(Entry[] entries, int size, String[] groupNames, int[] firstInGroup, int groupCount) {
+            this.entries = entries;
+            this.size = size;
+            this.groupNames = groupNames;
+            this.firstInGroup = firstInGroup;
+            this.groupCount = groupCount;
+        }
+
+        /** @return The number of results. */
+        public int size() {
+            return size;
+        }
+
+        /** @return The result with the given ID. */
+        public Entry get(int id) {
+            if (id < 0 || id >= size) {
+                throw new IndexOutOfBoundsException("No result with ID " + id + " in a snapshot of " + size);
+            }
+            return entries[id];
+        }
+
+        /** @return The number of groups, including those with no results. */
+        public int getGroupCount() {
+            return groupCount;
+        }
+
+        /** @return The name of the group with the given index, in the order groups were added. */
+        public String getGroupName(int groupIndex) {
+            return groupNames[groupIndex];
+        }
+
+        /**
+         * @return The ID of the first result of the given group, or -1 if it had none when the snapshot
+         * was taken. Use {@link #nextInGroup(int)} to go through the rest.
+         */
+        public int firstInGroup(int groupIndex) {
+            int id = firstInGroup[groupIndex];
+            return id < size ? id : -1;
+        }
+
+        /** @return The ID of the next result of the same group as the given one, or -1 if there isn't one. */
+        public int nextInGroup(int id) {
+            int next = entries[id].m_nextInGroup;
+            return next < size ? next : -1;
+        }
+    }
+
+    private Entry[] entries = new Entry[INITIAL_CAPACITY];
+    private int size = 0;
+    private String[] groupNames = new String[8];
+    private int[] firstInGroup = new int[8];
+    private int groupCount = 0;
+    private final Map<String, Integer> groupIndices = new HashMap<String, Integer>();
+    private Group[] groups = new Group[8];
+    private final int[] totals = new int[STATUS_COUNT];
+
+    private volatile Snapshot latest = new Snapshot(entries, 0, groupNames, firstInGroup, 0);
+
+    /**
+     * Adds a group, so it is listed even if none of its tests have results. Groups are also added when
+     * their first result is recorded.
+     *
+     * @return The group's index
+     */
+    public int addGroup(String group) {
+        Integer index = groupIndices.get(group);
+        if (index != null) {
+            return index;
+        }
+        if (groupCount == groupNames.length) {
+            groupNames = Arrays.copyOf(groupNames, groupCount * 2);
+            firstInGroup = Arrays.copyOf(firstInGroup, groupCount * 2);
+            groups = Arrays.copyOf(groups, groupCount * 2);
+        }
+        groupNames[groupCount] = group;
+        firstInGroup[groupCount] = -1;
+        groups[groupCount] = new Group();
+        groupIndices.put(group, groupCount);
+        groupCount++;
+        publish();
+        return groupCount - 1;
+    }
+
+    /**
+     * Records the result of a test.
+     *
+     * @param group The name of the test's group
+     * @param name The name the test's result is reported under
+     * @param result The result
+     * @return The result's ID
+     * @throws IllegalStateException If the test already has a result
+     */
+    public int put(String group, String name, TestResults result) {
+        int groupIndex = addGroup(group);
+        Group state = groups[groupIndex];
+        if (state.m_ids.containsKey(name)) {
+            throw new IllegalStateException("Test \"" + name + "\" of group \"" + group + "\" already has a result");
+        }
+
+        if (size == entries.length) {
+            // Snapshots keep the old array, which is never written to again
+            entries = Arrays.copyOf(entries, size * 2);
+        }
+        int id = size;
+        entries[id] = new Entry(id, groupIndex, group, name, result);
+        if (state.m_lastId < 0) {
+            firstInGroup[groupIndex] = id;
+        } else {
+            entries[state.m_lastId].m_nextInGroup = id;
+        }
+        state.m_lastId = id;
+        state.m_ids.put(name, id);
+        state.m_counts[result.m_successResult.ordinal()]++;
+        totals[result.m_successResult.ordinal()]++;
+        size++;
+        publish();
+        return id;
+    }
+
+    /**
+     * Makes room for the given number of results in total, so that recording them doesn't need to grow
+     * the store partway through a session.
+     *
+     * @param capacity The number of results to make room for
+     */
+    public void reserve(int capacity) {
+        if (capacity > entries.length) {
+            // Snapshots keep the old array, which is never written to again
+            entries = Arrays.copyOf(entries, capacity);
+            publish();
+        }
+    }
+
+    private void publish() {
+        latest = new Snapshot(entries, size, groupNames, firstInGroup, groupCount);
+    }
+
+    /** @return The result of the given test, or null if it has none. */
+    public TestResults get(String group, String name) {
+        Integer groupIndex = groupIndices.get(group);
+        if (groupIndex == null) {
+            return null;
+        }
+        Integer id = groups[groupIndex].m_ids.get(name);
+        return id == null ? null : entries[id].m_result;
+    }
+
+    /** @return The number of results. */
+    public int size() {
+        return size;
+    }
+
+    /** @return The number of results of the given group with the given status. */
+    public int getCount(String group, TestSuccess status) {
+        Integer groupIndex = groupIndices.get(group);
+        return groupIndex == null ? 0 : groups[groupIndex].m_counts[status.ordinal()];
+    }
+
+    /** @return The number of results of every group with the given status. */
+    public int getTotal(TestSuccess status) {
+        return totals[status.ordinal()];
+    }
+
+    /** @return The results recorded so far. Safe to call from any thread. */
+    public Snapshot snapshot() {
+        return latest;
+    }
+}
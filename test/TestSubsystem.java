@@ -5,7 +5,7 @@
 package frc.robot.test;
 
 import java.util.Random;
-import java.util.function.Supplier;
+import java.util.function.BooleanSupplier;
 
 import frc.robot.test.TestUtil.InstantTestMethod;
 
@@ -63,7 +63,7 @@ public class TestSubsystem extends SubsystemBaseTestable {
     this::exampleSinglePhaseTestMainLoop, 
     this::exampleSinglePhaseTestIsDone, 
     "Example One Phase Test"
-  );
+  ).withTimeout(Timeout.seconds(5));
   protected void exampleSinglePhaseTestMainLoop() {
     a = new Random().nextInt(1, 7);
   }
@@ -71,10 +71,9 @@ public class TestSubsystem extends SubsystemBaseTestable {
     return a==3;
   }
 
-  @SuppressWarnings("unchecked")
   protected Test multiphaseTest = new TestUtil.MultiphaseTest(
     new Runnable[] {this::phaseOneMain, this::phaseTwoMain}, 
-    new Supplier[] {this::phaseOneDone, this::phaseTwoDone}, 
+    new BooleanSupplier[] {this::phaseOneDone, this::phaseTwoDone}, 
     "Multiphase Test"
   );
   protected void phaseOneMain() {
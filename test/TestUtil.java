@@ -9,9 +9,20 @@ import java.lang.annotation.Inherited;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.DoubleSupplier;
 import java.util.function.Supplier;
 
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Notifier;
 import edu.wpi.first.wpilibj.Timer;
 
 /** Add your docs here. */
@@ -191,22 +202,122 @@ public class TestUtil {
         public boolean[] getDependencySuccessRequirements() { return successRequirements; }
     }
 
+    /**
+     * Marks a public, parameterless method of a {@link TestGroup} to be run as an {@link InstantTest}
+     * of that group. The test is named after the method unless a name is given.
+     */
     @Retention(RetentionPolicy.RUNTIME)
     @Target(ElementType.METHOD)
     @Inherited
-    @interface InstantTestMethod {
+    public @interface InstantTestMethod {
         String name() default "";
     }
 
+    /**
+     * Marks a {@link TestGroup} class to be listed in the test registry generated at compile time,
+     * even if it declares no {@link InstantTestMethod}s of its own. Classes declaring them are listed
+     * without this annotation.
+     */
+    @Retention(RetentionPolicy.CLASS)
+    @Target(ElementType.TYPE)
+    public @interface RegisteredTestGroup {}
 
-    /** A test that runs until a specified condition is met. Intended to be created from two existing functions. */
-    public static class OnePhaseTest implements Test {
 
-        protected Runnable periodicFunc;
+    /**
+     * The engine behind the stock tests which move through phases: each cycle runs the current phase,
+     * then moves on to the next if the phase has ended, and the test is done after the last phase.
+     * Subclasses describe their phases by index through {@link #runPhase(int)} and
+     * {@link #hasPhaseEnded(int)}, so a phase needs no objects of its own, and end conditions are
+     * {@link BooleanSupplier}s, which are checked without boxing.
+     */
+    public static abstract class PhasedTest implements Test {
+
         protected String name;
         protected Test[] dependencies;
         protected boolean[] successRequirements;
-        protected Supplier<Boolean> isDoneFunc;
+        protected int phase = 0;
+        protected int phaseCount;
+        protected Timeout timeout = null;
+
+        /**
+         * @param name The name of the test.
+         * @param phaseCount The number of phases.
+         * @param dependencies The dependencies
+         * @param successRequirements Which dependencies must succeed and which must fail
+         */
+        protected PhasedTest(String name, int phaseCount, Test[] dependencies, boolean[] successRequirements) {
+            this.name = name;
+            this.phaseCount = phaseCount;
+            this.dependencies = dependencies;
+            this.successRequirements = successRequirements;
+        }
+
+        /** Runs one cycle of the given phase. */
+        protected abstract void runPhase(int phase);
+
+        /** Whether the given phase has ended, checked after each cycle of it. */
+        protected abstract boolean hasPhaseEnded(int phase);
+
+        protected static boolean[] generateBoolArray(Test[] list) {
+            boolean[] out = new boolean[list.length];
+            for (int i = 0; i < out.length; i++) {
+                out[i] = true;
+            }
+            return out;
+        }
+
+        @Override
+        public void setup() {
+            phase = 0;
+        }
+
+        @Override
+        public void periodic() {
+            runPhase(phase);
+            if (hasPhaseEnded(phase)) {
+                phase++;
+            }
+        }
+
+        @Override
+        public boolean isDone() {
+            return phase >= phaseCount;
+        }
+
+        @Override
+        public String describeProgress() {
+            return "in phase " + (Math.min(phase, phaseCount - 1) + 1) + " of " + phaseCount;
+        }
+
+        @Override
+        public String getName() { return name; }
+        @Override
+        public Timeout getTimeout() { return timeout; }
+        @Override
+        public Test[] getDependencies() { return dependencies; }
+        @Override
+        public boolean[] getDependencySuccessRequirements() { return successRequirements; }
+    }
+
+    /**
+     * Adapts end conditions written as {@code Supplier<Boolean>}s, as the stock tests used to take, to
+     * {@link BooleanSupplier}s. Done once, when the test is created.
+     */
+    private static BooleanSupplier[] unboxed(Supplier<Boolean>[] conditions) {
+        BooleanSupplier[] out = new BooleanSupplier[conditions.length];
+        for (int i = 0; i < conditions.length; i++) {
+            Supplier<Boolean> condition = conditions[i];
+            out[i] = condition::get;
+        }
+        return out;
+    }
+
+
+    /** A test that runs until a specified condition is met. Intended to be created from two existing functions. */
+    public static class OnePhaseTest extends PhasedTest {
+
+        protected Runnable periodicFunc;
+        protected BooleanSupplier isDoneFunc;
 
         /**
          * Creates a OnePhaseTest.
@@ -216,12 +327,10 @@ public class TestUtil {
          * @param dependencies The dependencies (can be omitted)
          * @param successRequirements Which dependencies must succeed and which must fail (can be omitted)
          */
-        public OnePhaseTest(Runnable periodic, Supplier<Boolean> isDone, String name, Test[] dependencies, boolean[] successRequirements) {
+        public OnePhaseTest(Runnable periodic, BooleanSupplier isDone, String name, Test[] dependencies, boolean[] successRequirements) {
+            super(name, 1, dependencies, successRequirements);
             this.periodicFunc = periodic;
             this.isDoneFunc = isDone;
-            this.name = name;
-            this.dependencies = dependencies;
-            this.successRequirements = successRequirements;
         }
 
         /**
@@ -231,7 +340,7 @@ public class TestUtil {
          * @param name The name of the test.
          * @param dependencies The dependencies (can be omitted)
          */
-        public OnePhaseTest(Runnable execute, Supplier<Boolean> isDone, String name, Test[] dependencies) {
+        public OnePhaseTest(Runnable execute, BooleanSupplier isDone, String name, Test[] dependencies) {
             this(execute, isDone, name, dependencies, generateBoolArray(dependencies));
         }
 
@@ -241,44 +350,50 @@ public class TestUtil {
          * @param isDone A function returning whether the test is over yet.
          * @param name The name of the test.
          */
-        public OnePhaseTest(Runnable execute, Supplier<Boolean> isDone, String name) {
+        public OnePhaseTest(Runnable execute, BooleanSupplier isDone, String name) {
             this(execute, isDone, name, new Test[0], new boolean[0]);
         }
 
-        protected static boolean[] generateBoolArray(Test[] list) {
-            boolean[] out = new boolean[list.length];
-            for (int i = 0; i < out.length; i++) {
-                out[i] = true;
-            }
-            return out;
+        /** Creates a OnePhaseTest from a {@code Supplier<Boolean>}. Prefer the {@link BooleanSupplier} overloads. */
+        public OnePhaseTest(Runnable periodic, Supplier<Boolean> isDone, String name, Test[] dependencies, boolean[] successRequirements) {
+            this(periodic, (BooleanSupplier) isDone::get, name, dependencies, successRequirements);
         }
 
+        /** Creates a OnePhaseTest from a {@code Supplier<Boolean>}. Prefer the {@link BooleanSupplier} overloads. */
+        public OnePhaseTest(Runnable execute, Supplier<Boolean> isDone, String name, Test[] dependencies) {
+            this(execute, (BooleanSupplier) isDone::get, name, dependencies);
+        }
 
+        /** Creates a OnePhaseTest from a {@code Supplier<Boolean>}. Prefer the {@link BooleanSupplier} overloads. */
+        public OnePhaseTest(Runnable execute, Supplier<Boolean> isDone, String name) {
+            this(execute, (BooleanSupplier) isDone::get, name);
+        }
+
+        /**
+         * Sets how long the test may run before it fails.
+         * @param timeout The timeout
+         * @return This test, for chaining
+         */
+        public OnePhaseTest withTimeout(Timeout timeout) {
+            this.timeout = timeout;
+            return this;
+        }
 
         @Override
-        public void periodic() { periodicFunc.run(); }
-        @Override
-        public boolean isDone() { return isDoneFunc.get(); }
-        @Override
-        public String getName() { return name; }
+        protected void runPhase(int phase) { periodicFunc.run(); }
         @Override
-        public Test[] getDependencies() { return dependencies; }
+        protected boolean hasPhaseEnded(int phase) { return isDoneFunc.getAsBoolean(); }
         @Override
-        public boolean[] getDependencySuccessRequirements() { return successRequirements; }
+        public String describeProgress() { return null; }
     }
 
 
 
      /** A test with several phases, each of which have an end condition. Intended to be created from several existing functions. */
-    public static class MultiphaseTest implements Test {
+    public static class MultiphaseTest extends PhasedTest {
 
         protected Runnable[] phases;
-        protected String name;
-        protected Test[] dependencies;
-        protected boolean[] successRequirements;
-        protected Supplier<Boolean>[] phaseEndConditions;
-        protected int phase = 0;
-        protected int phaseCount;
+        protected BooleanSupplier[] phaseEndConditions;
 
         /**
          * Creates a MultiphaseTest.
@@ -288,14 +403,11 @@ public class TestUtil {
          * @param dependencies The dependencies (can be omitted)
          * @param successRequirements Which dependencies must succeed and which must fail (can be omitted)
          */
-        public MultiphaseTest(Runnable[] phases, Supplier<Boolean>[] phaseEndConditions, String name, Test[] dependencies, boolean[] successRequirements) {
+        public MultiphaseTest(Runnable[] phases, BooleanSupplier[] phaseEndConditions, String name, Test[] dependencies, boolean[] successRequirements) {
+            this(phases.length, name, dependencies, successRequirements);
             this.phases = phases;
             this.phaseEndConditions = phaseEndConditions;
-            this.name = name;
-            this.dependencies = dependencies;
-            this.successRequirements = successRequirements;
-            phaseCount = phases.length;
-            
+
             if (phaseEndConditions.length != phaseCount) {
                 throw new IllegalArgumentException("Number of phases must equal number of phase end conditions");
             }
@@ -308,7 +420,7 @@ public class TestUtil {
          * @param name The name of the test.
          * @param dependencies The dependencies (can be omitted)
          */
-        public MultiphaseTest(Runnable[] phases, Supplier<Boolean>[] phaseEndConditions, String name, Test[] dependencies) {
+        public MultiphaseTest(Runnable[] phases, BooleanSupplier[] phaseEndConditions, String name, Test[] dependencies) {
             this(phases, phaseEndConditions, name, dependencies, generateBoolArray(dependencies));
         }
 
@@ -318,49 +430,51 @@ public class TestUtil {
          * @param phaseEndConditions An array of functions specifying whether each phase has ended yet.
          * @param name The name of the test.
          */
-        public MultiphaseTest(Runnable[] phases, Supplier<Boolean>[] phaseEndConditions, String name) {
+        public MultiphaseTest(Runnable[] phases, BooleanSupplier[] phaseEndConditions, String name) {
             this(phases, phaseEndConditions, name, new Test[0], new boolean[0]);
         }
 
-        /**
-         * Only used for extension, so not everything has to specified immediately.
-         */
-        private MultiphaseTest() {}
+        /** Creates a MultiphaseTest from {@code Supplier<Boolean>}s. Prefer the {@link BooleanSupplier} overloads. */
+        public MultiphaseTest(Runnable[] phases, Supplier<Boolean>[] phaseEndConditions, String name, Test[] dependencies, boolean[] successRequirements) {
+            this(phases, unboxed(phaseEndConditions), name, dependencies, successRequirements);
+        }
 
-        protected static boolean[] generateBoolArray(Test[] list) {
-            boolean[] out = new boolean[list.length];
-            for (int i = 0; i < out.length; i++) {
-                out[i] = true;
-            }
-            return out;
+        /** Creates a MultiphaseTest from {@code Supplier<Boolean>}s. Prefer the {@link BooleanSupplier} overloads. */
+        public MultiphaseTest(Runnable[] phases, Supplier<Boolean>[] phaseEndConditions, String name, Test[] dependencies) {
+            this(phases, unboxed(phaseEndConditions), name, dependencies);
         }
 
-        @Override
-        public void setup() {
-            phase = 0;
+        /** Creates a MultiphaseTest from {@code Supplier<Boolean>}s. Prefer the {@link BooleanSupplier} overloads. */
+        public MultiphaseTest(Runnable[] phases, Supplier<Boolean>[] phaseEndConditions, String name) {
+            this(phases, unboxed(phaseEndConditions), name);
+        }
+
+        /**
+         * Only used for extension, by tests which decide when their phases end themselves.
+         */
+        protected MultiphaseTest(int phaseCount, String name, Test[] dependencies, boolean[] successRequirements) {
+            super(name, phaseCount, dependencies, successRequirements);
         }
 
         @Override
-        public void periodic() { 
+        protected void runPhase(int phase) {
             phases[phase].run();
-            if (phaseEndConditions[phase].get()) {
-                phase++;
-            }
         }
 
         @Override
-        public boolean isDone() { 
-            return phase == phaseCount;
+        protected boolean hasPhaseEnded(int phase) {
+            return phaseEndConditions[phase].getAsBoolean();
         }
 
-
-
-        @Override
-        public String getName() { return name; }
-        @Override
-        public Test[] getDependencies() { return dependencies; }
-        @Override
-        public boolean[] getDependencySuccessRequirements() { return successRequirements; }
+        /**
+         * Sets how long the test may run before it fails.
+         * @param timeout The timeout
+         * @return This test, for chaining
+         */
+        public MultiphaseTest withTimeout(Timeout timeout) {
+            this.timeout = timeout;
+            return this;
+        }
     }
 
     /**
@@ -368,6 +482,8 @@ public class TestUtil {
      */
     public static class TimedTest extends MultiphaseTest {
         protected Timer timer = new Timer();
+        /** How long after setup each phase ends, in seconds, added up from the durations once. */
+        protected double[] phaseEndTimes;
 
         /**
          * Creates a TimedTest.
@@ -378,14 +494,11 @@ public class TestUtil {
          * @param successRequirements Which dependencies must succeed and which must fail (can be omitted)
          */
         public TimedTest(Runnable[] phases, double[] durations, String name, Test[] dependencies, boolean[] successRequirements) {
+            super(phases.length, name, dependencies, successRequirements);
             this.phases = phases;
-            this.phaseEndConditions = generatePhaseEndConditions(durations);
-            this.name = name;
-            this.dependencies = dependencies;
-            this.successRequirements = successRequirements;
-            this.phaseCount = phases.length;
+            this.phaseEndTimes = generatePhaseEndTimes(durations);
             
-            if (phaseEndConditions.length != phaseCount) {
+            if (phaseEndTimes.length != phaseCount) {
                 throw new IllegalArgumentException("Number of phases must equal number of phase end conditions");
             }
         }
@@ -417,17 +530,19 @@ public class TestUtil {
             timer.restart();
         }
 
-        /** A helper method to get the suppliers used by the underlying MultiphaseTest. */
-        @SuppressWarnings("unchecked")
-        private Supplier<Boolean>[] generatePhaseEndConditions(double[] durations) {
-            Supplier<Boolean>[] out = (Supplier<Boolean>[]) new Supplier[durations.length];
+        @Override
+        protected boolean hasPhaseEnded(int phase) {
+            return timer.hasElapsed(phaseEndTimes[phase]);
+        }
+
+        /** A helper method to turn the durations of the phases into the times they end at. */
+        private static double[] generatePhaseEndTimes(double[] durations) {
+            double[] out = new double[durations.length];
 
             double total = 0.0;
             for (int i = 0; i < durations.length; i++) {
                 total += durations[i];
-                // Store each closure separately.
-                final double timeLimit = total;
-                out[i] = () -> timer.hasElapsed(timeLimit);
+                out[i] = total;
             }
             return out;
         }
@@ -436,8 +551,13 @@ public class TestUtil {
     /**
      * Combines multiple tests into one test which runs each in succession. Similar
      * to SequentialCommandGroup.
+     * 
+     * <p>Each component takes three phases: its setup, its periodic until it is done, and its
+     * closedown, each in a cycle of its own. The component and step are worked out from the phase
+     * number, so combining tests, including other combined tests, creates nothing per phase.</p>
      */
     public static class CombinedTest extends MultiphaseTest {
+        protected Test[] components;
         
         /**
          * Creates a CombinedTest.
@@ -447,13 +567,13 @@ public class TestUtil {
          * @param successRequirements Which dependencies must succeed and which must fail (can be omitted)
          */
         public CombinedTest(Test[] components, String name, Test[] dependencies, boolean[] successRequirements) {
-            super(phasesFromTests(components), conditionsFromTests(components), name, dependencies, successRequirements);
+            super(components.length * 3, name, dependencies, successRequirements);
+            this.components = components;
         }
 
         /**
-         * Creates a TimedTest.
-         * @param phases An array of the functions to run.
-         * @param durations An array describing how long each phase should last.
+         * Creates a CombinedTest. This overload assumes all dependencies are required to succeed.
+         * @param components The test to be joined together in order.
          * @param name The name of the test.
          * @param dependencies The dependencies (can be omitted)
          */
@@ -462,39 +582,844 @@ public class TestUtil {
         }
 
         /**
-         * Creates a TimedTest.
-         * @param phases An array of the functions to run.
-         * @param durations An array describing how long each phase should last.
+         * Creates a CombinedTest. This overload assumes there are no dependencies.
+         * @param components The test to be joined together in order.
          * @param name The name of the test.
          */
         public CombinedTest(Test[] components, String name) {
             this(components, name, new Test[0], new boolean[0]);
         }
 
-        private static Runnable[] phasesFromTests(Test[] components) {
-            Runnable[] out = new Runnable[components.length * 3];
+        @Override
+        protected void runPhase(int phase) {
+            Test component = components[phase / 3];
+            switch (phase % 3) {
+                case 0: component.setup(); break;
+                case 1: component.periodic(); break;
+                default: component.closedown(); break;
+            }
+        }
+
+        @Override
+        protected boolean hasPhaseEnded(int phase) {
+            return phase % 3 != 1 || components[phase / 3].isDone();
+        }
+
+        /** Waits on whatever the component being run is waiting on. */
+        @Override
+        public Future<?> getAwaited() {
+            return phase < phaseCount && phase % 3 == 1 ? components[phase / 3].getAwaited() : null;
+        }
+
+        /** Closes down the component being run, if the combined test ended partway through it, such as by failing. */
+        @Override
+        public void closedown() {
+            if (phase < phaseCount && phase % 3 == 1) {
+                components[phase / 3].closedown();
+            }
+        }
+
+        @Override
+        public String describeProgress() {
+            if (components.length == 0) {
+                return null;
+            }
+            Test component = components[Math.min(phase / 3, components.length - 1)];
+            String componentProgress = component.describeProgress();
+            return "in test " + (Math.min(phase / 3, components.length - 1) + 1) + " of " + components.length
+                + " (" + component.getName() + (componentProgress != null ? ", " + componentProgress : "") + ")";
+        }
+    }
+
+    /**
+     * Runs another test's {@link Test#periodic()} and {@link Test#isDone()} on a {@link Notifier} of its
+     * own, at a faster rate than the robot loop, such as to time a flywheel's spin-up or catch an encoder
+     * glitch between cycles. The test is set up and closed down on the main thread as usual, and is
+     * parked there (see {@link Test#getAwaited()}) while the notifier runs it. Once it finishes or fails,
+     * the outcome is handed back to the main thread the next cycle, so it is recorded like any other.
+     *
+     * <p>The wrapped test runs at the same time as the robot loop, so anything it shares with other
+     * code must be safe to use from another thread. Other tests should depend on this test rather than
+     * the one it wraps, and its timeout is best given in seconds, as it runs few cycles of the robot loop.</p>
+     */
+    public static class HighRateTest implements Test {
+        protected final Test test;
+        protected final double frequencyHz;
+        /** Held by the notifier while the wrapped test runs, and by the main thread while handing over. */
+        protected final Object lock = new Object();
+        protected Notifier notifier = null;
+        protected CompletableFuture<Void> finished = null;
+        protected boolean stopped = true;
+        protected Throwable failure = null;
+        protected long samples = 0;
+        protected boolean done = false;
+
+        /**
+         * Creates a HighRateTest.
+         * @param test The test to run on the notifier.
+         * @param frequencyHz How many times a second to run it, such as 1000.
+         */
+        public HighRateTest(Test test, double frequencyHz) {
+            if (!(frequencyHz > 0)) {
+                throw new IllegalArgumentException("A high rate test must run at a positive rate, not " + frequencyHz + " Hz");
+            }
+            this.test = test;
+            this.frequencyHz = frequencyHz;
+        }
+
+        /** Runs the wrapped test once, on the notifier's thread. */
+        protected void sample() {
+            synchronized (lock) {
+                // Never drives the robot outside of enabled test mode, even before being closed down
+                if (stopped || !DriverStation.isTest() || !DriverStation.isEnabled()) {
+                    return;
+                }
+                samples++;
+                try {
+                    test.periodic();
+                    stopped = test.isDone();
+                } catch (RuntimeException | Error e) {
+                    // Includes assertion errors and unanswered questions, rethrown on the main thread
+                    failure = e;
+                    stopped = true;
+                }
+                if (stopped) {
+                    finished.complete(null);
+                }
+            }
+        }
+
+        @Override
+        public void setup() {
+            test.setup();
+            synchronized (lock) {
+                stopped = false;
+                failure = null;
+                samples = 0;
+                done = false;
+                finished = new CompletableFuture<Void>();
+            }
+            notifier = new Notifier(this::sample);
+            notifier.setName(test.getName() + " at " + frequencyHz + " Hz");
+            notifier.startPeriodic(1 / frequencyHz);
+        }
+
+        /** Hands back the outcome of the wrapped test, if it has one, rethrowing its failure here. */
+        @Override
+        public void periodic() {
+            Throwable failed;
+            synchronized (lock) {
+                failed = failure;
+                done = stopped && failure == null;
+            }
+            if (failed instanceof RuntimeException) {
+                throw (RuntimeException) failed;
+            } else if (failed != null) {
+                throw (Error) failed;
+            }
+        }
+
+        @Override
+        public boolean isDone() { return done; }
+        @Override
+        public Future<?> getAwaited() { return finished; }
+
+        /** Stops the notifier before closing down the wrapped test, so the two never overlap. */
+        @Override
+        public void closedown() {
+            synchronized (lock) {
+                stopped = true;
+            }
+            if (notifier != null) {
+                notifier.stop();
+                notifier.close();
+                notifier = null;
+            }
+            test.closedown();
+        }
+
+        @Override
+        public String describeProgress() {
+            synchronized (lock) {
+                String progress = test.describeProgress();
+                return (progress != null ? progress + ", " : "") + "after " + samples + " samples at " + frequencyHz + " Hz";
+            }
+        }
+
+        @Override
+        public String describeResult() {
+            synchronized (lock) {
+                return test.describeResult();
+            }
+        }
+
+        @Override
+        public String getName() { return test.getName(); }
+        @Override
+        public Timeout getTimeout() { return test.getTimeout(); }
+        @Override
+        public Test[] getDependencies() { return test.getDependencies(); }
+        @Override
+        public boolean[] getDependencySuccessRequirements() { return test.getDependencySuccessRequirements(); }
+    }
+
+    /**
+     * A test written as ordinary code from start to end, which waits with {@link #await(BooleanSupplier)},
+     * {@link #sleep(double)} and {@link #ask(String)} instead of being split into phases. The body runs
+     * on a thread of its own, but only ever one step at a time: each cycle, the main thread hands it the
+     * turn in {@link #periodic()} and waits until it reaches its next wait or ends. The body therefore
+     * runs in the same order with the robot loop as any other test, and needs nothing to be thread safe.
+     *
+     * <p>The thread only exists between setup and closedown, and asks for a small stack, so defining many
+     * sequential tests costs little more than the objects themselves. If the test ends early, such as by
+     * timing out, the body is stopped at the wait it reached. A body which never waits holds up the robot
+     * loop, just like a {@link Test#periodic()} which never returns.</p>
+     */
+    public static class SequentialTest implements Test {
+        /** The stack asked for by each body's thread. The JVM may round it up to its own minimum. */
+        public static final long STACK_SIZE_BYTES = 64 * 1024;
+
+        /** The code of a {@link SequentialTest}, which waits by calling back into the test. */
+        @FunctionalInterface
+        public interface Body {
+            /**
+             * Runs the test from start to end. Fails by throwing an assertion error, as in any other test.
+             * @param test The test being run, to wait through
+             */
+            public void run(SequentialTest test);
+        }
+
+        /** Thrown into the body at its current wait to stop it when the test is closed down early. */
+        private static class Stopped extends Error {
+            private static final long serialVersionUID = 1L;
+
+            Stopped() {
+                super(null, null, false, false);
+            }
+        }
+
+        protected Body body;
+        protected String name;
+        protected Test[] dependencies;
+        protected boolean[] successRequirements;
+        protected Timeout timeout = null;
+        protected Timer timer = new Timer();
+
+        protected Thread thread = null;
+        /** Released by the main thread to give the body its turn. */
+        protected Semaphore turn;
+        /** Released by the body when it reaches a wait or ends. */
+        protected Semaphore yielded;
+        protected boolean stopping = false;
+        protected boolean finished = false;
+        protected Throwable failure = null;
+        protected Future<?> awaited = null;
+        protected int step = 0;
+        protected String waitingFor = null;
+
+        /**
+         * Creates a SequentialTest.
+         * @param body The code of the test.
+         * @param name The name of the test.
+         * @param dependencies The dependencies (can be omitted)
+         * @param successRequirements Which dependencies must succeed and which must fail (can be omitted)
+         */
+        public SequentialTest(Body body, String name, Test[] dependencies, boolean[] successRequirements) {
+            this.body = body;
+            this.name = name;
+            this.dependencies = dependencies;
+            this.successRequirements = successRequirements;
+        }
+
+        /**
+         * Creates a SequentialTest. This overload assumes all dependencies are required to succeed.
+         * @param body The code of the test.
+         * @param name The name of the test.
+         * @param dependencies The dependencies (can be omitted)
+         */
+        public SequentialTest(Body body, String name, Test[] dependencies) {
+            this(body, name, dependencies, generateBoolArray(dependencies));
+        }
+
+        /**
+         * Creates a SequentialTest. This overload assumes there are no dependencies.
+         * @param body The code of the test.
+         * @param name The name of the test.
+         */
+        public SequentialTest(Body body, String name) {
+            this(body, name, new Test[0], new boolean[0]);
+        }
+
+        protected static boolean[] generateBoolArray(Test[] list) {
+            boolean[] out = new boolean[list.length];
+            for (int i = 0; i < out.length; i++) {
+                out[i] = true;
+            }
+            return out;
+        }
+
+        /**
+         * Sets how long the test may run before it fails.
+         * @param timeout The timeout
+         * @return This test, for chaining
+         */
+        public SequentialTest withTimeout(Timeout timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        /**
+         * Waits until the condition is met, checking it once a cycle, starting with this one.
+         * Only to be called from the body.
+         * @param condition The condition to wait for
+         * @param description What is being waited for, given when the test times out (can be omitted)
+         */
+        public void await(BooleanSupplier condition, String description) {
+            step++;
+            waitingFor = description;
+            while (!condition.getAsBoolean()) {
+                yieldCycle();
+            }
+            waitingFor = null;
+        }
+
+        /**
+         * Waits until the condition is met, checking it once a cycle, starting with this one.
+         * Only to be called from the body.
+         * @param condition The condition to wait for
+         */
+        public void await(BooleanSupplier condition) {
+            await(condition, null);
+        }
+
+        /**
+         * Waits for the given time, measured as a {@link TimedTest} measures its phases. Only to be called from the body.
+         * @param seconds How long to wait
+         */
+        public void sleep(double seconds) {
+            timer.restart();
+            await(() -> timer.hasElapsed(seconds), "sleeping for " + seconds + " s");
+        }
+
+        /**
+         * Waits until the next cycle. Only to be called from the body.
+         */
+        public void nextCycle() {
+            step++;
+            yieldCycle();
+        }
+
+        /**
+         * Asks the user a question, and waits for the answer. The test is parked meanwhile (see
+         * {@link Test#getAwaited()}), so other tests keep running. Only to be called from the body.
+         * @param question The question to ask the user
+         * @param optionYes The text of the option answering true
+         * @param optionNo The text of the option answering false
+         * @return Whether the user chose {@code optionYes}
+         * @throws AssertionError If the question was not answered
+         */
+        public boolean ask(String question, String optionYes, String optionNo) {
+            step++;
+            waitingFor = "waiting for an answer to \"" + question + "\"";
+            Future<Boolean> answer = askUserBool(question, optionYes, optionNo);
+            while (!answer.isDone()) {
+                awaited = answer;
+                yieldCycle();
+            }
+            awaited = null;
+            waitingFor = null;
+
+            Boolean chosen;
+            try {
+                chosen = answer.get();
+            } catch (InterruptedException | ExecutionException | CancellationException e) {
+                chosen = null;
+            }
+            assertBool(chosen != null, "The question \"" + question + "\" was not answered");
+            return chosen;
+        }
+
+        /**
+         * Asks the user a yes or no question, and waits for the answer. Only to be called from the body.
+         * @param question The question to ask the user
+         * @return Whether the user answered "Yes"
+         * @see #ask(String, String, String)
+         */
+        public boolean ask(String question) {
+            return ask(question, "Yes", "No");
+        }
+
+        /** Hands the turn back to the main thread, and waits for it to come round again. */
+        private void yieldCycle() {
+            yielded.release();
+            turn.acquireUninterruptibly();
+            if (stopping) {
+                throw new Stopped();
+            }
+        }
 
-            for (int i = 0; i < components.length; i++) {
-                out[i*3]   = components[i]::setup;
-                out[i*3+1] = components[i]::periodic;
-                out[i*3+2] = components[i]::closedown;
+        /** What the body's thread runs: waits for the first turn, then the body. */
+        private void runBody() {
+            turn.acquireUninterruptibly();
+            try {
+                if (!stopping) {
+                    body.run(this);
+                }
+            } catch (Stopped e) {
+                // Closed down early, so nobody wants the outcome
+            } catch (RuntimeException | Error e) {
+                // Includes assertion errors and unanswered questions, rethrown on the main thread
+                failure = e;
+            } finally {
+                finished = true;
+                yielded.release();
             }
+        }
 
+        @Override
+        public void setup() {
+            // A body left from a run which was never closed down is stopped, rather than left waiting forever
+            closedown();
+            turn = new Semaphore(0);
+            yielded = new Semaphore(0);
+            stopping = false;
+            finished = false;
+            failure = null;
+            awaited = null;
+            step = 0;
+            waitingFor = null;
+            thread = new Thread(null, this::runBody, name, STACK_SIZE_BYTES);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /** Runs the body until it next waits or ends, rethrowing its failure here. */
+        @Override
+        public void periodic() {
+            if (finished) {
+                return;
+            }
+            turn.release();
+            yielded.acquireUninterruptibly();
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            } else if (failure != null) {
+                throw (Error) failure;
+            }
+        }
+
+        @Override
+        public boolean isDone() { return finished; }
+        @Override
+        public Future<?> getAwaited() { return awaited; }
+
+        /** Stops the body at its current wait, if it hasn't ended, and waits for its thread to finish. */
+        @Override
+        public void closedown() {
+            if (thread == null) {
+                return;
+            }
+            if (!finished) {
+                stopping = true;
+                turn.release();
+                yielded.acquireUninterruptibly();
+            }
+            thread = null;
+        }
+
+        @Override
+        public String describeProgress() {
+            if (thread == null || step == 0) {
+                return null;
+            }
+            return "at step " + step + (waitingFor != null ? " (" + waitingFor + ")" : "");
+        }
+
+        @Override
+        public String getName() { return name; }
+        @Override
+        public Timeout getTimeout() { return timeout; }
+        @Override
+        public Test[] getDependencies() { return dependencies; }
+        @Override
+        public boolean[] getDependencySuccessRequirements() { return successRequirements; }
+    }
+
+    /**
+     * A test which runs a trial over and over, measuring something each time, and checks the spread of
+     * the measurements rather than any single one, for mechanisms too noisy for one
+     * {@link TestUtil#assertEquals(double, double, double)}. Measurements go into a
+     * {@link QuantileSketch}, so the test takes the same memory however many trials it runs, and
+     * checks such as {@link #withQuantileBelow(double, double)} are made once the trials are over. The
+     * distribution is given as the result's message, and added to the message of a failed check.
+     *
+     * <p>Each trial is a test of its own, set up, run until it is done and closed down in turn. If a
+     * trial fails, so does this test.</p>
+     */
+    public static class StatisticalTest implements Test {
+        protected Test trial;
+        protected DoubleSupplier measurement;
+        protected int trialCount;
+        protected double durationSeconds = 0;
+        protected String name;
+        protected Test[] dependencies;
+        protected boolean[] successRequirements;
+        protected Timeout timeout = null;
+        protected List<Consumer<QuantileSketch>> checks = new ArrayList<Consumer<QuantileSketch>>();
+
+        protected QuantileSketch sketch = new QuantileSketch();
+        protected Timer testTimer = new Timer();
+        protected Timer trialTimer = new Timer();
+        protected int trialsRun = 0;
+        protected boolean inTrial = false;
+        protected boolean done = false;
+
+        /**
+         * Creates a StatisticalTest.
+         * @param trial The test to run as each trial. Its dependencies are ignored.
+         * @param measurement What to measure after each trial, or null to measure how long each trial took, in seconds.
+         * @param trialCount How many trials to run, or 0 to run them for as long as given by {@link #withDuration(double)}.
+         * @param name The name of the test.
+         * @param dependencies The dependencies (can be omitted)
+         * @param successRequirements Which dependencies must succeed and which must fail (can be omitted)
+         */
+        public StatisticalTest(Test trial, DoubleSupplier measurement, int trialCount, String name, Test[] dependencies, boolean[] successRequirements) {
+            if (trialCount < 0) {
+                throw new IllegalArgumentException("A statistical test can't run " + trialCount + " trials");
+            }
+            this.trial = trial;
+            this.measurement = measurement;
+            this.trialCount = trialCount;
+            this.name = name;
+            this.dependencies = dependencies;
+            this.successRequirements = successRequirements;
+        }
+
+        /**
+         * Creates a StatisticalTest. This overload assumes all dependencies are required to succeed.
+         * @param trial The test to run as each trial. Its dependencies are ignored.
+         * @param measurement What to measure after each trial, or null to measure how long each trial took, in seconds.
+         * @param trialCount How many trials to run, or 0 to run them for as long as given by {@link #withDuration(double)}.
+         * @param name The name of the test.
+         * @param dependencies The dependencies (can be omitted)
+         */
+        public StatisticalTest(Test trial, DoubleSupplier measurement, int trialCount, String name, Test[] dependencies) {
+            this(trial, measurement, trialCount, name, dependencies, generateBoolArray(dependencies));
+        }
+
+        /**
+         * Creates a StatisticalTest. This overload assumes there are no dependencies.
+         * @param trial The test to run as each trial. Its dependencies are ignored.
+         * @param measurement What to measure after each trial, or null to measure how long each trial took, in seconds.
+         * @param trialCount How many trials to run, or 0 to run them for as long as given by {@link #withDuration(double)}.
+         * @param name The name of the test.
+         */
+        public StatisticalTest(Test trial, DoubleSupplier measurement, int trialCount, String name) {
+            this(trial, measurement, trialCount, name, new Test[0], new boolean[0]);
+        }
+
+        protected static boolean[] generateBoolArray(Test[] list) {
+            boolean[] out = new boolean[list.length];
+            for (int i = 0; i < out.length; i++) {
+                out[i] = true;
+            }
             return out;
         }
 
-        private static Supplier<Boolean>[] conditionsFromTests(Test[] components) {
-            @SuppressWarnings("unchecked")
-            Supplier<Boolean>[] out = (Supplier<Boolean>[]) new Supplier[components.length * 3];
+        /**
+         * Stops starting new trials once the given time has passed since setup. The trial in progress
+         * is still finished, and the trial count still applies if it isn't 0. A test with a trial count
+         * of 0 and no duration fails without running any trials.
+         * @param seconds How long to run trials for
+         * @return This test, for chaining
+         */
+        public StatisticalTest withDuration(double seconds) {
+            if (!(seconds > 0)) {
+                throw new IllegalArgumentException("A statistical test can't run trials for " + seconds + " seconds");
+            }
+            this.durationSeconds = seconds;
+            return this;
+        }
+
+        /**
+         * Checks that at most the given fraction of measurements are over a bound, such as that 95% of
+         * settle times are under 0.4 s.
+         * @param fraction The quantile to check, such as 0.95
+         * @param bound The most it may be
+         * @return This test, for chaining
+         */
+        public StatisticalTest withQuantileBelow(double fraction, double bound) {
+            return withCheck(sketch -> {
+                double quantile = sketch.getQuantile(fraction);
+                assertBool(quantile <= bound, String.format("p%s was %.4g, over %.4g", percentile(fraction), quantile, bound));
+            });
+        }
+
+        /**
+         * Checks that at least the given fraction of measurements are over a bound, such as that 95%
+         * of runs reach a speed.
+         * @param fraction The fraction of measurements which must be over the bound, such as 0.95
+         * @param bound The least they may be
+         * @return This test, for chaining
+         */
+        public StatisticalTest withQuantileAbove(double fraction, double bound) {
+            return withCheck(sketch -> {
+                double quantile = sketch.getQuantile(1 - fraction);
+                assertBool(quantile >= bound, String.format("p%s was %.4g, under %.4g", percentile(1 - fraction), quantile, bound));
+            });
+        }
+
+        /**
+         * Checks that the mean of the measurements is close to what is expected.
+         * @param expected The expected mean
+         * @param tolerance How far the mean may be from it
+         * @return This test, for chaining
+         */
+        public StatisticalTest withMeanWithin(double expected, double tolerance) {
+            return withCheck(sketch -> assertEquals(expected, sketch.getMean(),
+                String.format("The mean was %.4g, not within %.4g of %.4g", sketch.getMean(), tolerance, expected), tolerance));
+        }
+
+        /**
+         * Adds a check of the measurements, which fails by throwing an assertion error, such as with
+         * {@link TestUtil#assertBool(boolean, String)}.
+         * @param check The check
+         * @return This test, for chaining
+         */
+        public StatisticalTest withCheck(Consumer<QuantileSketch> check) {
+            checks.add(check);
+            return this;
+        }
+
+        /**
+         * Sets how long the test may run before it fails, including every trial.
+         * @param timeout The timeout
+         * @return This test, for chaining
+         */
+        public StatisticalTest withTimeout(Timeout timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        private static String percentile(double fraction) {
+            double percent = fraction * 100;
+            return percent == Math.rint(percent) ? Long.toString((long) percent) : Double.toString(percent);
+        }
+
+        @Override
+        public void setup() {
+            sketch.reset();
+            trialsRun = 0;
+            inTrial = false;
+            done = false;
+            testTimer.restart();
+        }
+
+        /** Runs a cycle of the trial in progress, starting one if there isn't, and checks the measurements after the last. */
+        @Override
+        public void periodic() {
+            // Failed here rather than thrown from setup, which would stop the whole session
+            assertBool(trialCount > 0 || durationSeconds > 0, "Needs a number of trials or a duration");
+            if (!inTrial) {
+                trial.setup();
+                trialTimer.restart();
+                inTrial = true;
+            }
+            trial.periodic();
+            if (!trial.isDone()) {
+                return;
+            }
+            trial.closedown();
+            inTrial = false;
+            sketch.record(measurement != null ? measurement.getAsDouble() : trialTimer.get());
+            trialsRun++;
+
+            boolean outOfTrials = trialCount > 0 && trialsRun >= trialCount;
+            boolean outOfTime = durationSeconds > 0 && testTimer.hasElapsed(durationSeconds);
+            if (!outOfTrials && !outOfTime) {
+                return;
+            }
+            for (Consumer<QuantileSketch> check : checks) {
+                try {
+                    check.accept(sketch);
+                } catch (AssertionError e) {
+                    throw new AssertionError(e.getMessage() + " (" + sketch + ")");
+                }
+            }
+            done = true;
+        }
+
+        @Override
+        public boolean isDone() { return done; }
 
-            for (int i = 0; i < components.length; i++) {
-                out[i*3]   = () -> true;
-                out[i*3+1] = components[i]::isDone;
-                out[i*3+2] = () -> true;
+        /** Waits on whatever the trial in progress is waiting on. */
+        @Override
+        public Future<?> getAwaited() { return inTrial ? trial.getAwaited() : null; }
+
+        /** Closes down the trial in progress, if the test ended partway through it, such as by failing. */
+        @Override
+        public void closedown() {
+            if (inTrial) {
+                trial.closedown();
+                inTrial = false;
             }
+        }
+
+        @Override
+        public String describeProgress() {
+            String progress = "in trial " + (trialsRun + 1) + (trialCount > 0 ? " of " + trialCount : "");
+            if (inTrial) {
+                String trialProgress = trial.describeProgress();
+                if (trialProgress != null) {
+                    progress += " (" + trialProgress + ")";
+                }
+            }
+            return trialsRun > 0 ? progress + ", so far " + sketch : progress;
+        }
 
+        @Override
+        public String describeResult() { return sketch.toString(); }
+        @Override
+        public String getName() { return name; }
+        @Override
+        public Timeout getTimeout() { return timeout; }
+        @Override
+        public Test[] getDependencies() { return dependencies; }
+        @Override
+        public boolean[] getDependencySuccessRequirements() { return successRequirements; }
+    }
+
+    /**
+     * A test which asks the user a question, and succeeds if they choose the expected option. The test
+     * is parked while waiting for the answer (see {@link Test#getAwaited()}), so other tests keep
+     * running while the user thinks.
+     */
+    public static class QuestionTest implements Test {
+
+        protected String question;
+        protected String trueOption;
+        protected String falseOption;
+        protected boolean expectedAnswer;
+        protected String name;
+        protected Test[] dependencies;
+        protected boolean[] successRequirements;
+        protected Timeout timeout = null;
+        protected Future<Boolean> answer = null;
+        protected boolean answerChecked = false;
+
+        /**
+         * Creates a QuestionTest.
+         * @param question The question to ask the user.
+         * @param trueOption The text of the first option.
+         * @param falseOption The text of the second option.
+         * @param expectedAnswer Whether the first option (true) or second option (false) must be chosen for the test to succeed.
+         * @param name The name of the test.
+         * @param dependencies The dependencies (can be omitted)
+         * @param successRequirements Which dependencies must succeed and which must fail (can be omitted)
+         */
+        public QuestionTest(String question, String trueOption, String falseOption, boolean expectedAnswer, String name, Test[] dependencies, boolean[] successRequirements) {
+            this.question = question;
+            this.trueOption = trueOption;
+            this.falseOption = falseOption;
+            this.expectedAnswer = expectedAnswer;
+            this.name = name;
+            this.dependencies = dependencies;
+            this.successRequirements = successRequirements;
+        }
+
+        /**
+         * Creates a QuestionTest. This overload assumes all dependencies are required to succeed.
+         * @param question The question to ask the user.
+         * @param trueOption The text of the first option.
+         * @param falseOption The text of the second option.
+         * @param expectedAnswer Whether the first option (true) or second option (false) must be chosen for the test to succeed.
+         * @param name The name of the test.
+         * @param dependencies The dependencies (can be omitted)
+         */
+        public QuestionTest(String question, String trueOption, String falseOption, boolean expectedAnswer, String name, Test[] dependencies) {
+            this(question, trueOption, falseOption, expectedAnswer, name, dependencies, generateBoolArray(dependencies));
+        }
+
+        /**
+         * Creates a QuestionTest. This overload assumes there are no dependencies.
+         * @param question The question to ask the user.
+         * @param trueOption The text of the first option.
+         * @param falseOption The text of the second option.
+         * @param expectedAnswer Whether the first option (true) or second option (false) must be chosen for the test to succeed.
+         * @param name The name of the test.
+         */
+        public QuestionTest(String question, String trueOption, String falseOption, boolean expectedAnswer, String name) {
+            this(question, trueOption, falseOption, expectedAnswer, name, new Test[0], new boolean[0]);
+        }
+
+        /**
+         * Creates a QuestionTest which succeeds if the user answers "Yes". This overload assumes there are no dependencies.
+         * @param question The question to ask the user.
+         * @param name The name of the test.
+         */
+        public QuestionTest(String question, String name) {
+            this(question, "Yes", "No", true, name);
+        }
+
+        protected static boolean[] generateBoolArray(Test[] list) {
+            boolean[] out = new boolean[list.length];
+            for (int i = 0; i < out.length; i++) {
+                out[i] = true;
+            }
             return out;
         }
+
+        /**
+         * Sets how long the test may run before it fails, including the time spent waiting for an answer.
+         * @param timeout The timeout
+         * @return This test, for chaining
+         */
+        public QuestionTest withTimeout(Timeout timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        @Override
+        public void setup() {
+            answer = null;
+            answerChecked = false;
+        }
+
+        @Override
+        public void periodic() {
+            if (answer == null) {
+                answer = askUserBool(question, trueOption, falseOption);
+            }
+            // An answer may already be known, such as from an answer policy, so it is checked straight away
+            if (!answer.isDone()) {
+                return;
+            }
+
+            Boolean chosen;
+            try {
+                chosen = answer.get();
+            } catch (InterruptedException | ExecutionException | CancellationException e) {
+                chosen = null;
+            }
+            assertBool(chosen != null, "The question was not answered");
+            assertBool(chosen == expectedAnswer, "The user chose \"" + (chosen ? trueOption : falseOption) + "\"");
+            answerChecked = true;
+        }
+
+        @Override
+        public boolean isDone() { return answerChecked; }
+        @Override
+        public Future<?> getAwaited() { return answer; }
+        @Override
+        public String describeProgress() { return answer == null ? null : "waiting for an answer to \"" + question + "\""; }
+        @Override
+        public String getName() { return name; }
+        @Override
+        public Timeout getTimeout() { return timeout; }
+        @Override
+        public Test[] getDependencies() { return dependencies; }
+        @Override
+        public boolean[] getDependencySuccessRequirements() { return successRequirements; }
     }
 
 }
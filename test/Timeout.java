@@ -0,0 +1,62 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.test;
+
+/**
+ * A limit on how long something may run, in either seconds or cycles of the robot loop. Timeouts can
+ * be given to a {@link Test} (see {@link Test#getTimeout()}), a {@link TestGroup} (see
+ * {@link TestGroup#getTimeout()}), or a whole session (see {@link TestManager#setSessionTimeout(Timeout)}).
+ */
+public class Timeout {
+    private final long nanos;
+    private final int cycles;
+
+    private Timeout(long nanos, int cycles) {
+        this.nanos = nanos;
+        this.cycles = cycles;
+    }
+
+    /**
+     * @param seconds How long may pass before the timeout expires
+     * @return A timeout measured in time
+     */
+    public static Timeout seconds(double seconds) {
+        if (!(seconds > 0)) {
+            throw new IllegalArgumentException("Timeout must be positive, not " + seconds + " seconds");
+        }
+        return new Timeout((long) (seconds * 1E9), -1);
+    }
+
+    /**
+     * @param cycles How many cycles may be run before the timeout expires
+     * @return A timeout measured in cycles
+     */
+    public static Timeout cycles(int cycles) {
+        if (cycles <= 0) {
+            throw new IllegalArgumentException("Timeout must be positive, not " + cycles + " cycles");
+        }
+        return new Timeout(-1, cycles);
+    }
+
+    /**
+     * @param cyclesRun The number of cycles run so far
+     * @param elapsedNanos The time passed so far, in nanoseconds
+     * @return Whether the timeout has expired
+     */
+    public boolean hasExpired(int cyclesRun, long elapsedNanos) {
+        if (cycles >= 0) {
+            return cyclesRun >= cycles;
+        }
+        return elapsedNanos >= nanos;
+    }
+
+    @Override
+    public String toString() {
+        if (cycles >= 0) {
+            return cycles + (cycles == 1 ? " cycle" : " cycles");
+        }
+        return String.format("%.2f s", nanos / 1E9);
+    }
+}
@@ -0,0 +1,209 @@
+package frc.robot.test.networking;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import edu.wpi.first.wpilibj.Filesystem;
+import frc.robot.test.TestManager.TestSuccess;
+
+/**
+ * Answers to user questions which are known ahead of time, so tests can run with nobody at the client,
+ * such as overnight soak runs or in simulation. Answers are matched by the question's text along with
+ * both of its options. Questions with no known answer are handled according to the {@link Fallback}.
+ *
+ * <p>Answers are stored in a text file, one per line: {@code T} or {@code F}, then the question, the
+ * true option and the false option, separated by tabs. Blank lines and lines starting with {@code #}
+ * are ignored. When learning, answers given by the user at the client are added to the file at the
+ * end of each session, so the next run can be unattended.</p>
+ */
+public class AnswerPolicy {
+    /** The name of the answer file in the deploy directory used by {@link #loadDefault()}. */
+    public static final String DEFAULT_FILE_NAME = "ammeter-answers.txt";
+    /** Separates the parts of a question in the keys of {@link #answers}. Can't appear in the file. */
+    private static final String KEY_SEPARATOR = "\u001F";
+
+    /** What to do with a question which has no known answer. */
+    public enum Fallback {
+        /** Send the question to the client, as if there were no policy. */
+        ASK,
+        /** Fail the test which asked. */
+        FAIL,
+        /** Mark the test which asked as not run, so it is skipped. */
+        NOTRUN
+    }
+
+    private final Map<String, Boolean> answers = new ConcurrentHashMap<String, Boolean>();
+    private final Path file;
+    private volatile Fallback fallback = Fallback.ASK;
+    private volatile boolean learning = false;
+    private volatile boolean changed = false;
+
+    /** @param file The file answers are loaded from and learned answers saved to, or null to keep them in memory */
+    public AnswerPolicy(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Loads the answers in the given file. A missing file is treated as empty, so it can be learned.
+     *
+     * @param file The answer file
+     * @return A policy with the file's answers
+     */
+    public static AnswerPolicy load(Path file) {
+        AnswerPolicy policy = new AnswerPolicy(file);
+        if (!Files.exists(file)) {
+            return policy;
+        }
+        try {
+            int lineNumber = 0;
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                lineNumber++;
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\t", -1);
+                if (parts.length != 4 || !(parts[0].equals("T") || parts[0].equals("F"))) {
+                    throw new IllegalArgumentException("Line " + lineNumber + " of " + file + " is not an answer: \"" + line + "\"");
+                }
+                policy.answers.put(key(unescape(parts[1]), unescape(parts[2]), unescape(parts[3])), parts[0].equals("T"));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        System.out.println("Loaded " + policy.answers.size() + " answers from " + file);
+        return policy;
+    }
+
+    /** @return A policy loaded from {@value #DEFAULT_FILE_NAME} in the deploy directory. */
+    public static AnswerPolicy loadDefault() {
+        return load(new File(Filesystem.getDeployDirectory(), DEFAULT_FILE_NAME).toPath());
+    }
+
+    /**
+     * Sets what to do with questions which have no known answer. Defaults to {@link Fallback#ASK}.
+     *
+     * @return This policy, for chaining
+     */
+    public AnswerPolicy setFallback(Fallback fallback) {
+        this.fallback = fallback;
+        return this;
+    }
+
+    public Fallback getFallback() {
+        return fallback;
+    }
+
+    /**
+     * Sets whether answers given by the user are remembered, and saved to the answer file when each
+     * session ends.
+     *
+     * @return This policy, for chaining
+     */
+    public AnswerPolicy setLearning(boolean learning) {
+        this.learning = learning;
+        return this;
+    }
+
+    public boolean isLearning() {
+        return learning;
+    }
+
+    /**
+     * Sets the answer to a question.
+     *
+     * @param answer Whether the true option is chosen
+     * @return This policy, for chaining
+     */
+    public AnswerPolicy put(String question, String trueOption, String falseOption, boolean answer) {
+        answers.put(key(question, trueOption, falseOption), answer);
+        return this;
+    }
+
+    /** @return Whether the true option should be chosen, or null if the answer isn't known. */
+    public Boolean lookup(String question, String trueOption, String falseOption) {
+        return answers.get(key(question, trueOption, falseOption));
+    }
+
+    /**
+     * Answers a question without asking anyone, if this policy can.
+     *
+     * @return The answer, already complete, or null if the question should be asked as usual
+     * @throws UnansweredQuestionException If the answer isn't known and the fallback fails the test or marks it not run
+     */
+    public CompletableFuture<Boolean> answer(String question, String trueOption, String falseOption) {
+        Boolean known = lookup(question, trueOption, falseOption);
+        if (known != null) {
+            System.out.println("Answered \"" + question + "\" with \"" + (known ? trueOption : falseOption) + "\" from the answer policy");
+            return CompletableFuture.completedFuture(known);
+        }
+        switch (fallback) {
+            case FAIL:
+                throw new UnansweredQuestionException(TestSuccess.FAIL, question);
+            case NOTRUN:
+                throw new UnansweredQuestionException(TestSuccess.NOTRUN, question);
+            default:
+                return null;
+        }
+    }
+
+    /** Remembers an answer given by the user, if learning. */
+    void learn(String question, String trueOption, String falseOption, boolean answer) {
+        if (learning && !Boolean.valueOf(answer).equals(answers.put(key(question, trueOption, falseOption), answer))) {
+            changed = true;
+        }
+    }
+
+    /** Writes every answer to the answer file, if any were learned since it was last written. */
+    void saveIfChanged() {
+        if (!changed || file == null) {
+            return;
+        }
+        changed = false;
+
+        List<String> lines = new ArrayList<String>();
+        lines.add("# Ammeter answers: T or F, question, true option, false option, separated by tabs");
+        for (Map.Entry<String, Boolean> answer : answers.entrySet()) {
+            String[] parts = answer.getKey().split(KEY_SEPARATOR, -1);
+            lines.add((answer.getValue() ? "T" : "F") + "\t" + escape(parts[0]) + "\t" + escape(parts[1]) + "\t" + escape(parts[2]));
+        }
+        try {
+            // Written beside the file and moved into place, so a crash never leaves half a file
+            Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.write(temporary, lines, StandardCharsets.UTF_8);
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("Could not save learned answers to " + file + ": " + e);
+        }
+    }
+
+    private static String key(String question, String trueOption, String falseOption) {
+        return question + KEY_SEPARATOR + trueOption + KEY_SEPARATOR + falseOption;
+    }
+
+    private static String escape(String text) {
+        return text.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n");
+    }
+
+    private static String unescape(String text) {
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char next = text.charAt(i);
+            if (next == '\\' && i + 1 < text.length()) {
+                char escaped = text.charAt(++i);
+                out.append(escaped == 't' ? '\t' : escaped == 'n' ? '\n' : escaped);
+            } else {
+                out.append(next);
+            }
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,216 @@
+package frc.robot.test.networking;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * One connected client, for as long as it stays connected. The session owns the buffers used to talk
+ * to the client for its whole life, so bytes received ahead of time are never lost, and everything
+ * waiting to be sent goes out in as few writes as possible.
+ *
+ * <p>A client may start by sending {@value #HELLO} followed by the capabilities it supports. The robot
+ * replies with {@value #WELCOME} and the capabilities it accepted, and both sides then switch to the
+ * negotiated protocol. A client which sends anything else, or nothing within
+ * {@link #NEGOTIATION_WINDOW_NANOS}, uses the line protocol.</p>
+ */
+public class ClientSession {
+    public static final String HELLO = "AMMETER_HELLO";
+    public static final String WELCOME = "AMMETER_WELCOME";
+    public static final String FRAMED_CAPABILITY = "FRAMED";
+    public static final String DEFLATE_CAPABILITY = "DEFLATE";
+    public static final String STREAM_CAPABILITY = "STREAM";
+    public static final String TIMING_CAPABILITY = "TIMING";
+    public static final String QBATCH_CAPABILITY = "QBATCH";
+    /** How long a client has to say hello before the line protocol is chosen for it. */
+    public static final long NEGOTIATION_WINDOW_NANOS = 250_000_000L;
+    private static final int INITIAL_READ_BUFFER_SIZE = 4096;
+    private static final int MAX_READ_BUFFER_SIZE = ProtocolCodec.Framed.MAX_INBOUND_FRAME + 4;
+
+    final SocketChannel channel;
+    final SelectionKey key;
+
+    /** Bytes received but not yet decoded. Always left ready to be written to. */
+    private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_READ_BUFFER_SIZE);
+    private final ArrayDeque<ByteBuffer> outgoing = new ArrayDeque<ByteBuffer>();
+    private ByteBuffer[] gatherBuffers = new ByteBuffer[8];
+    private int outgoingBytes = 0;
+
+    private ProtocolCodec codec = new ProtocolCodec.Line();
+    private final Set<String> capabilities = new HashSet<String>();
+    private boolean negotiating = true;
+    private final long negotiationDeadline;
+    /** Messages sent before the protocol was chosen, to be encoded once it is. */
+    private final List<Message> held = new ArrayList<Message>();
+
+    ClientSession(SocketChannel channel, SelectionKey key) {
+        this.channel = channel;
+        this.key = key;
+        this.negotiationDeadline = System.nanoTime() + NEGOTIATION_WINDOW_NANOS;
+    }
+
+    /** Queues a message to be sent, encoded for this client. */
+    public void send(Message message) {
+        if (negotiating) {
+            held.add(message);
+            return;
+        }
+        queue(codec.encode(message));
+    }
+
+    private void queue(ByteBuffer bytes) {
+        outgoing.add(bytes);
+        outgoingBytes += bytes.remaining();
+        key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+    }
+
+    /**
+     * Reads whatever the client has sent.
+     *
+     * @return False if the client closed the connection
+     */
+    boolean readFromChannel() throws IOException {
+        if (!readBuffer.hasRemaining()) {
+            if (readBuffer.capacity() >= MAX_READ_BUFFER_SIZE) {
+                throw new IOException("Client sent a message which is too long");
+            }
+            ByteBuffer larger = ByteBuffer.allocate(Math.min(readBuffer.capacity() * 2, MAX_READ_BUFFER_SIZE));
+            readBuffer.flip();
+            larger.put(readBuffer);
+            readBuffer = larger;
+        }
+        return channel.read(readBuffer) >= 0;
+    }
+
+    /** @return The next complete message received from the client, or null if there isn't one yet. */
+    String nextInbound() throws IOException {
+        readBuffer.flip();
+        try {
+            if (negotiating) {
+                // The hello is always a line, whatever protocol follows it
+                String line = new ProtocolCodec.Line().decode(readBuffer);
+                if (line == null) {
+                    return null;
+                }
+                if (!line.startsWith(HELLO)) {
+                    finishNegotiation();
+                    return line;
+                }
+                negotiate(line.substring(HELLO.length()).trim().split(" "));
+            }
+            return codec.decode(readBuffer);
+        } finally {
+            if (readBuffer.position() != 0 || readBuffer.limit() != readBuffer.capacity()) {
+                readBuffer.compact();
+            }
+        }
+    }
+
+    private void negotiate(String[] offered) {
+        if (contains(offered, FRAMED_CAPABILITY)) {
+            codec = new ProtocolCodec.Framed(contains(offered, DEFLATE_CAPABILITY));
+        }
+
+        StringBuilder welcome = new StringBuilder(WELCOME);
+        for (String capability : offered) {
+            boolean supported = capability.equals(FRAMED_CAPABILITY) || capability.equals(STREAM_CAPABILITY)
+                || capability.equals(TIMING_CAPABILITY) || capability.equals(QBATCH_CAPABILITY)
+                || (capability.equals(DEFLATE_CAPABILITY) && contains(offered, FRAMED_CAPABILITY));
+            if (supported && !hasCapability(capability)) {
+                addCapability(capability);
+                welcome.append(' ').append(capability);
+            }
+        }
+        queue(StandardCharsets.UTF_8.encode(welcome.append('\n').toString()));
+        finishNegotiation();
+    }
+
+    private static boolean contains(String[] values, String value) {
+        for (String each : values) {
+            if (each.equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Settles on the negotiated protocol, or the line protocol if there was no hello, and sends anything held. */
+    void finishNegotiation() {
+        if (!negotiating) {
+            return;
+        }
+        negotiating = false;
+        for (Message message : held) {
+            send(message);
+        }
+        held.clear();
+    }
+
+    /** @return Whether the protocol is still being chosen. */
+    boolean isNegotiating() {
+        return negotiating;
+    }
+
+    /** @return Whether the client has had long enough to say hello. */
+    boolean negotiationExpired(long now) {
+        return negotiating && now - negotiationDeadline >= 0;
+    }
+
+    /** @return Whether the client offered the given capability, either in its hello or with its selection. */
+    public boolean hasCapability(String capability) {
+        return capabilities.contains(capability);
+    }
+
+    /**
+     * Records a capability the client supports. Line protocol clients may list capabilities after
+     * their selection rather than saying hello.
+     */
+    void addCapability(String capability) {
+        capabilities.add(capability);
+        if (capability.equals(TIMING_CAPABILITY) && codec instanceof ProtocolCodec.Line) {
+            ((ProtocolCodec.Line) codec).setIncludeTiming(true);
+        }
+    }
+
+    /** @return The number of bytes waiting to be sent. */
+    int getOutgoingBytes() {
+        return outgoingBytes;
+    }
+
+    /** Writes as much waiting data as the client will take without blocking. */
+    void write() throws IOException {
+        if (gatherBuffers.length < outgoing.size()) {
+            gatherBuffers = new ByteBuffer[Math.max(outgoing.size(), gatherBuffers.length * 2)];
+        }
+        int count = 0;
+        for (ByteBuffer buffer : outgoing) {
+            gatherBuffers[count++] = buffer;
+        }
+        outgoingBytes -= (int) channel.write(gatherBuffers, 0, count);
+        while (!outgoing.isEmpty() && !outgoing.peek().hasRemaining()) {
+            outgoing.poll();
+        }
+        for (int i = 0; i < count; i++) {
+            gatherBuffers[i] = null;
+        }
+        if (outgoing.isEmpty()) {
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    void close() {
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+    }
+}
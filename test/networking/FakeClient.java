@@ -0,0 +1,302 @@
+package frc.robot.test.networking;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+import frc.robot.test.networking.ProtocolCodec.Line;
+
+/**
+ * A stand-in for the Ammeter client which speaks the line protocol, for testing and measuring a
+ * {@link Workstation} without anyone at a real client. Selections and questions are answered by code,
+ * and everything the robot sends is checked against the protocol, so a malformed result fails loudly
+ * instead of being shown wrongly.
+ */
+public class FakeClient implements AutoCloseable {
+    /** Answers questions in place of the user. */
+    public interface Answerer {
+        /** @return Whether to choose the true option */
+        public boolean answer(String question, String trueOption, String falseOption);
+    }
+
+    /** One result as received. */
+    public static class Result {
+        public final String m_group;
+        /** {@code S}, {@code F} or {@code N}. */
+        public final char m_status;
+        public final String m_name;
+        public final String m_message;
+        /** The timing line without its prefix, or null if none was sent. */
+        public final String m_timing;
+
+        public Result(String group, char status, String name, String message, String timing) {
+            m_group = group;
+            m_status = status;
+            m_name = name;
+            m_message = message;
+            m_timing = timing;
+        }
+    }
+
+    /** Everything received in one session, and how long it took. */
+    public static class SessionReport {
+        public String[] m_groups = new String[0];
+        public final List<Result> m_results = new ArrayList<Result>();
+        public int m_questionsAnswered = 0;
+        /** Whether the robot resumed a session instead of offering a selection. */
+        public boolean m_resumed = false;
+        /** From connecting until the selection was received, in nanoseconds. */
+        public long m_selectionNanos = -1;
+        /** From sending the selection until the first result was received, or -1 if there were none. */
+        public long m_firstResultNanos = -1;
+        /** From sending the selection until the results terminator was received. */
+        public long m_sessionNanos = -1;
+        public long m_bytesReceived = 0;
+        public long m_bytesSent = 0;
+
+        /** @return The number of results with the given status. */
+        public int count(char status) {
+            int count = 0;
+            for (Result result : m_results) {
+                if (result.m_status == status) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                "%d groups, %d results (%d passed, %d failed, %d not run), %d questions answered%n"
+                    + "selection after %.3f ms, first result after %.3f ms, session %.3f ms%n"
+                    + "%d bytes received, %d bytes sent",
+                m_groups.length, m_results.size(), count('S'), count('F'), count('N'), m_questionsAnswered,
+                m_selectionNanos / 1E6, m_firstResultNanos / 1E6, m_sessionNanos / 1E6, m_bytesReceived, m_bytesSent
+            );
+        }
+    }
+
+    /** Counts the bytes read through it. */
+    private static class CountingInputStream extends FilterInputStream {
+        long count = 0;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            if (read >= 0) {
+                count++;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+
+    private final Socket socket;
+    private final long connectedNanos;
+    private final CountingInputStream counter;
+    private final BufferedReader in;
+    /** A line read ahead and given back, or null. */
+    private String pushedBack = null;
+    private final OutputStream out;
+    private long bytesSent = 0;
+    private int lineNumber = 0;
+
+    private String[] capabilities = new String[0];
+    private Function<String[], boolean[]> selector = groups -> {
+        boolean[] all = new boolean[groups.length];
+        Arrays.fill(all, true);
+        return all;
+    };
+    private Answerer answerer = (question, trueOption, falseOption) -> true;
+
+    /** Connects to a robot. */
+    public FakeClient(String host, int port) throws IOException {
+        socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        connectedNanos = System.nanoTime();
+        counter = new CountingInputStream(socket.getInputStream());
+        in = new BufferedReader(new InputStreamReader(counter, StandardCharsets.UTF_8));
+        out = socket.getOutputStream();
+    }
+
+    /**
+     * Sets the capabilities listed after the selection, such as {@value ClientSession#STREAM_CAPABILITY}
+     * and {@value ClientSession#QBATCH_CAPABILITY}. None are asked for by default.
+     *
+     * @return This client, for chaining
+     */
+    public FakeClient withCapabilities(String... capabilities) {
+        this.capabilities = capabilities;
+        return this;
+    }
+
+    /**
+     * Sets how test groups are selected. Every group is selected by default.
+     *
+     * @param selector Given the names of the groups offered, returns whether to run each
+     * @return This client, for chaining
+     */
+    public FakeClient withSelection(Function<String[], boolean[]> selector) {
+        this.selector = selector;
+        return this;
+    }
+
+    /**
+     * Sets how questions are answered. The true option is always chosen by default.
+     *
+     * @return This client, for chaining
+     */
+    public FakeClient withAnswerer(Answerer answerer) {
+        this.answerer = answerer;
+        return this;
+    }
+
+    /**
+     * Takes part in one session, from the group selection to the results terminator.
+     *
+     * @return Everything received
+     * @throws IllegalStateException If the robot breaks the protocol
+     */
+    public SessionReport runSession() throws IOException {
+        SessionReport report = new SessionReport();
+        long sessionStart = readSelection(report);
+        boolean timing = Arrays.asList(capabilities).contains(ClientSession.TIMING_CAPABILITY);
+
+        String group = null;
+        while (true) {
+            String line = readLine();
+            if (line.equals(Line.RESULTS_TERMINATOR)) {
+                break;
+            } else if (line.equals(Line.QUESTION_HEADER)) {
+                boolean answer = answerer.answer(readLine(), readLine(), readLine());
+                report.m_questionsAnswered++;
+                send(answer ? "T" : "F");
+            } else if (line.equals(Line.QUESTION_BATCH_HEADER)) {
+                StringBuilder answers = new StringBuilder();
+                for (String id = readLine(); !id.equals(Line.QUESTION_BATCH_TERMINATOR); id = readLine()) {
+                    boolean answer = answerer.answer(readLine(), readLine(), readLine());
+                    report.m_questionsAnswered++;
+                    answers.append(answers.length() > 0 ? "\n" : "").append("A:").append(id).append(answer ? ":T" : ":F");
+                }
+                send(answers.toString());
+            } else if (line.startsWith("G:")) {
+                group = line.substring(2);
+            } else if (isResultLine(line)) {
+                if (group == null) {
+                    throw violation("Result before any group", line);
+                }
+                String message = readLine();
+                String timingLine = null;
+                if (timing) {
+                    // Every result is followed by another line, so reading ahead never waits for long
+                    String next = readLine();
+                    if (next.startsWith(Line.TIMING_PREFIX)) {
+                        timingLine = next.substring(Line.TIMING_PREFIX.length());
+                    } else {
+                        unreadLine(next);
+                    }
+                }
+                if (report.m_firstResultNanos < 0) {
+                    report.m_firstResultNanos = System.nanoTime() - sessionStart;
+                }
+                report.m_results.add(new Result(group, line.charAt(0), line.substring(2), message, timingLine));
+            } else {
+                throw violation("Unexpected line", line);
+            }
+        }
+
+        report.m_sessionNanos = System.nanoTime() - sessionStart;
+        report.m_bytesReceived = counter.count;
+        report.m_bytesSent = bytesSent;
+        return report;
+    }
+
+    /** Reads and answers the group selection, or a resumed session. @return When the selection was sent */
+    private long readSelection(SessionReport report) throws IOException {
+        List<String> groups = new ArrayList<String>();
+        for (String line = readLine(); !line.equals(Line.GROUP_SELECTION_TERMINATOR); line = readLine()) {
+            if (line.equals(Line.RESUME_HEADER) && groups.isEmpty()) {
+                report.m_resumed = true;
+                report.m_selectionNanos = System.nanoTime() - connectedNanos;
+                return System.nanoTime();
+            }
+            groups.add(line);
+        }
+        report.m_groups = groups.toArray(new String[0]);
+        report.m_selectionNanos = System.nanoTime() - connectedNanos;
+
+        boolean[] selected = selector.apply(report.m_groups);
+        StringBuilder selection = new StringBuilder();
+        for (boolean each : selected) {
+            selection.append(each ? 'T' : 'F');
+        }
+        for (String capability : capabilities) {
+            selection.append(' ').append(capability);
+        }
+        long sent = System.nanoTime();
+        send(selection.toString());
+        return sent;
+    }
+
+    private static boolean isResultLine(String line) {
+        return line.length() >= 2 && line.charAt(1) == ':' && "SFN".indexOf(line.charAt(0)) >= 0;
+    }
+
+    private String readLine() throws IOException {
+        lineNumber++;
+        if (pushedBack != null) {
+            String line = pushedBack;
+            pushedBack = null;
+            return line;
+        }
+        String line = in.readLine();
+        if (line == null) {
+            throw new IOException("The robot closed the connection at line " + lineNumber);
+        }
+        return line;
+    }
+
+    /** Gives back a line read too far ahead, to be returned by the next {@link #readLine()}. */
+    private void unreadLine(String line) {
+        pushedBack = line;
+        lineNumber--;
+    }
+
+    private void send(String text) throws IOException {
+        byte[] bytes = (text + "\n").getBytes(StandardCharsets.UTF_8);
+        out.write(bytes);
+        out.flush();
+        bytesSent += bytes.length;
+    }
+
+    private IllegalStateException violation(String problem, String line) {
+        return new IllegalStateException(problem + " at line " + lineNumber + ": \"" + line + "\"");
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
@@ -0,0 +1,149 @@
+package frc.robot.test.networking;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import frc.robot.test.TestResultsStore;
+import frc.robot.test.TestManager.TestResults;
+import frc.robot.test.TestManager.TestSuccess;
+
+/**
+ * A message between the robot and a client, independent of how it is encoded. Every message is a type
+ * and a list of text fields. How they are written on the wire is up to the {@link ProtocolCodec} the
+ * client negotiated.
+ */
+public class Message {
+
+    /** The kinds of message, along with the code identifying each in a binary frame. */
+    public enum Type {
+        /** Robot to client. Fields: the name of each test group. */
+        SELECTION(0x01),
+        /** Robot to client. Fields: the question, the true option, then the false option. */
+        QUESTION(0x02),
+        /**
+         * Robot to client. Fields: the group, the status ("S", "F" or "N"), the test name, the detail message,
+         * then the timing (see {@link TestResults#getTimingSummary()}).
+         */
+        RESULT(0x03),
+        /** Robot to client. Fields: any number of results, each as {@value #RESULT_FIELDS} fields like {@link #RESULT}. An empty status lists a group with no results. */
+        RESULTS(0x04),
+        /** Robot to client. No fields. */
+        END_RESULTS(0x05),
+        /** Robot to client. No fields. Sent to a client taking over a session partway through. */
+        RESUME(0x06),
+        /**
+         * Robot to client, for clients which batch questions. Fields: any number of questions, each as
+         * four fields: its ID, then the same fields as {@link #QUESTION}.
+         */
+        QUESTION_BATCH(0x07),
+        /** Client to robot. Fields: the selection, such as "TTF", optionally followed by capabilities. */
+        SELECTION_RESPONSE(0x41),
+        /** Client to robot. Fields: "T" or "F", or for clients which batch questions, "A:" followed by the question's ID, ":", then "T" or "F". */
+        ANSWER(0x42);
+
+        public final byte m_code;
+
+        private Type(int code) {
+            m_code = (byte) code;
+        }
+
+        public static Type fromCode(byte code) {
+            for (Type type : values()) {
+                if (type.m_code == code) {
+                    return type;
+                }
+            }
+            return null;
+        }
+    }
+
+    /** The number of fields each result takes up. */
+    public static final int RESULT_FIELDS = 5;
+
+    public final Type m_type;
+    public final String[] m_fields;
+
+    public Message(Type type, String... fields) {
+        m_type = type;
+        m_fields = fields;
+    }
+
+    public static Message selection(String[] testGroups) {
+        return new Message(Type.SELECTION, testGroups);
+    }
+
+    public static Message question(String question, String trueOption, String falseOption) {
+        return new Message(Type.QUESTION, question, trueOption, falseOption);
+    }
+
+    /** @param fields The fields of each question, flattened as described by {@link Type#QUESTION_BATCH} */
+    public static Message questionBatch(String[] fields) {
+        return new Message(Type.QUESTION_BATCH, fields);
+    }
+
+    public static Message result(String groupName, String testName, TestResults result) {
+        return new Message(Type.RESULT, groupName, statusOf(result.m_successResult), testName, result.m_message,
+            result.getTimingSummary());
+    }
+
+    /** Lists every result, grouped in the order groups were added, and in the order they were recorded within each. */
+    public static Message results(TestResultsStore.Snapshot results) {
+        List<String> fields = new ArrayList<String>();
+        for (int group = 0; group < results.getGroupCount(); group++) {
+            int id = results.firstInGroup(group);
+            if (id < 0) {
+                addResultFields(fields, results.getGroupName(group), "", "", "", "");
+            }
+            for (; id >= 0; id = results.nextInGroup(id)) {
+                TestResultsStore.Entry test = results.get(id);
+                addResultFields(fields, test.m_group, statusOf(test.m_result.m_successResult),
+                    test.m_name, test.m_result.m_message, test.m_result.getTimingSummary());
+            }
+        }
+        return new Message(Type.RESULTS, fields.toArray(new String[0]));
+    }
+
+    private static void addResultFields(List<String> fields, String group, String status, String name, String message, String timing) {
+        fields.add(group);
+        fields.add(status);
+        fields.add(name);
+        fields.add(message);
+        fields.add(timing);
+    }
+
+    public static Message endResults() {
+        return new Message(Type.END_RESULTS);
+    }
+
+    public static Message resume() {
+        return new Message(Type.RESUME);
+    }
+
+    /** @return The single letter used for a test status on the wire. */
+    public static String statusOf(TestSuccess success) {
+        switch (success) {
+            case SUCCESS:
+                return "S";
+            case FAIL:
+                return "F";
+            case NOTRUN:
+                return "N";
+            default:
+                return "0";
+        }
+    }
+
+    /** @return The test status sent on the wire as the given letter. */
+    public static TestSuccess successOf(char status) {
+        switch (status) {
+            case 'S':
+                return TestSuccess.SUCCESS;
+            case 'F':
+                return TestSuccess.FAIL;
+            case 'N':
+                return TestSuccess.NOTRUN;
+            default:
+                throw new IllegalArgumentException("Unknown test status '" + status + "'");
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package frc.robot.test.networking;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Turns {@link Message}s into bytes for a client, and bytes from a client into the text it sent. Each
+ * {@link ClientSession} owns one codec, chosen when the client connects.
+ */
+public interface ProtocolCodec {
+
+    /** @return The bytes to send for the given message, ready to be read. */
+    public ByteBuffer encode(Message message);
+
+    /**
+     * Takes the next complete message from the client out of the buffer. Nothing is consumed if only
+     * part of a message has arrived.
+     *
+     * @param in Bytes received from the client, ready to be read
+     * @return The text of the message (a line, or the first field of a frame), or null if it is incomplete
+     * @throws IOException If the client sent something which can't be decoded
+     */
+    public String decode(ByteBuffer in) throws IOException;
+
+    /**
+     * The line based UTF-8 protocol described in the README, which every client understands.
+     */
+    public static class Line implements ProtocolCodec {
+        public static final String GROUP_SELECTION_TERMINATOR = "END_SELECTION";
+        public static final String RESULTS_TERMINATOR = "END_RESULTS";
+        public static final String QUESTION_HEADER = "BEGIN_QUESTION";
+        public static final String QUESTION_BATCH_HEADER = "BEGIN_QUESTIONS";
+        public static final String QUESTION_BATCH_TERMINATOR = "END_QUESTIONS";
+        public static final String RESUME_HEADER = "RESUME_SESSION";
+        public static final String TIMING_PREFIX = "T:";
+
+        private boolean includeTiming = false;
+
+        /**
+         * Sets whether each result is followed by a line of timing. Only clients which ask for it are
+         * sent timing, as older clients would read it as the next result.
+         */
+        public void setIncludeTiming(boolean includeTiming) {
+            this.includeTiming = includeTiming;
+        }
+
+        @Override
+        public ByteBuffer encode(Message message) {
+            StringBuilder out = new StringBuilder();
+            String[] fields = message.m_fields;
+            switch (message.m_type) {
+                case SELECTION:
+                    for (String testGroupName : fields) {
+                        line(out, testGroupName);
+                    }
+                    line(out, GROUP_SELECTION_TERMINATOR);
+                    break;
+                case QUESTION:
+                    line(out, QUESTION_HEADER);
+                    line(out, fields[0]);
+                    line(out, fields[1]);
+                    line(out, fields[2]);
+                    break;
+                case QUESTION_BATCH:
+                    line(out, QUESTION_BATCH_HEADER);
+                    for (String field : fields) {
+                        line(out, field);
+                    }
+                    line(out, QUESTION_BATCH_TERMINATOR);
+                    break;
+                case RESULT:
+                    line(out, "G:" + fields[0]);
+                    result(out, fields, 0);
+                    break;
+                case RESULTS:
+                    String group = null;
+                    for (int i = 0; i + Message.RESULT_FIELDS <= fields.length; i += Message.RESULT_FIELDS) {
+                        if (!fields[i].equals(group)) {
+                            group = fields[i];
+                            line(out, "G:" + group);
+                        }
+                        if (!fields[i + 1].isEmpty()) {
+                            result(out, fields, i);
+                        }
+                    }
+                    break;
+                case END_RESULTS:
+                    line(out, RESULTS_TERMINATOR);
+                    break;
+                case RESUME:
+                    line(out, RESUME_HEADER);
+                    break;
+                default:
+                    for (String field : fields) {
+                        line(out, field);
+                    }
+            }
+            return StandardCharsets.UTF_8.encode(out.toString());
+        }
+
+        /** Writes the lines of the result whose fields start at the given index, after its group line. */
+        private void result(StringBuilder out, String[] fields, int start) {
+            line(out, fields[start + 1] + ":" + fields[start + 2]);
+            line(out, fields[start + 3]);
+            if (includeTiming && !fields[start + 4].isEmpty()) {
+                line(out, TIMING_PREFIX + fields[start + 4]);
+            }
+        }
+
+        private static void line(StringBuilder out, String text) {
+            out.append(text).append('\n');
+        }
+
+        @Override
+        public String decode(ByteBuffer in) {
+            for (int i = in.position(); i < in.limit(); i++) {
+                if (in.get(i) == '\n') {
+                    int end = i > in.position() && in.get(i - 1) == '\r' ? i - 1 : i;
+                    byte[] bytes = new byte[end - in.position()];
+                    in.get(bytes);
+                    in.position(i + 1);
+                    return new String(bytes, StandardCharsets.UTF_8);
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A length prefixed binary protocol. Every frame is:
+     * <pre>
+     * int32  length of the rest of the frame
+     * int8   message type code ({@link Message.Type#m_code})
+     * int8   flags (bit 0: the payload is deflate compressed)
+     * bytes  payload: an int32 field count, then each field as an int32 length and UTF-8 bytes
+     * </pre>
+     * All integers are big endian. Large payloads are compressed when the client supports it.
+     */
+    public static class Framed implements ProtocolCodec {
+        public static final int FLAG_DEFLATED = 0x01;
+        /** Payloads smaller than this aren't worth compressing. */
+        public static final int DEFLATE_THRESHOLD = 512;
+        /** The largest frame a client may send. */
+        public static final int MAX_INBOUND_FRAME = 1 << 16;
+
+        private final boolean useDeflate;
+        private final Deflater deflater;
+        private final Inflater inflater = new Inflater();
+        private final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        private byte[] compressionBuffer = new byte[DEFLATE_THRESHOLD];
+
+        /** @param useDeflate Whether large payloads sent to the client should be compressed */
+        public Framed(boolean useDeflate) {
+            this.useDeflate = useDeflate;
+            this.deflater = useDeflate ? new Deflater(Deflater.BEST_SPEED) : null;
+        }
+
+        @Override
+        public ByteBuffer encode(Message message) {
+            payload.reset();
+            writeInt(payload, message.m_fields.length);
+            for (String field : message.m_fields) {
+                byte[] bytes = field.getBytes(StandardCharsets.UTF_8);
+                writeInt(payload, bytes.length);
+                payload.write(bytes, 0, bytes.length);
+            }
+
+            byte[] body = payload.toByteArray();
+            int bodyLength = body.length;
+            int flags = 0;
+            if (useDeflate && body.length >= DEFLATE_THRESHOLD) {
+                deflater.reset();
+                deflater.setInput(body);
+                deflater.finish();
+                if (compressionBuffer.length < body.length) {
+                    compressionBuffer = new byte[body.length];
+                }
+                int compressedLength = deflater.deflate(compressionBuffer);
+                // Only send the compressed form if it finished in less space
+                if (deflater.finished() && compressedLength < body.length) {
+                    body = compressionBuffer;
+                    bodyLength = compressedLength;
+                    flags |= FLAG_DEFLATED;
+                }
+            }
+
+            ByteBuffer out = ByteBuffer.allocate(4 + 2 + bodyLength);
+            out.putInt(2 + bodyLength);
+            out.put(message.m_type.m_code);
+            out.put((byte) flags);
+            out.put(body, 0, bodyLength);
+            out.flip();
+            return out;
+        }
+
+        @Override
+        public String decode(ByteBuffer in) throws IOException {
+            if (in.remaining() < 4) {
+                return null;
+            }
+            int length = in.getInt(in.position());
+            if (length < 2 || length > MAX_INBOUND_FRAME) {
+                throw new IOException("Client sent a frame of invalid length " + length);
+            }
+            if (in.remaining() < 4 + length) {
+                return null;
+            }
+
+            in.getInt();
+            Message.Type type = Message.Type.fromCode(in.get());
+            int flags = in.get();
+            byte[] body = new byte[length - 2];
+            in.get(body);
+            if (type != Message.Type.SELECTION_RESPONSE && type != Message.Type.ANSWER) {
+                throw new IOException("Client sent an unexpected frame type");
+            }
+            if ((flags & FLAG_DEFLATED) != 0) {
+                body = inflate(body);
+            }
+
+            ByteBuffer fields = ByteBuffer.wrap(body);
+            if (fields.remaining() < 4 || fields.getInt() < 1 || fields.remaining() < 4) {
+                return "";
+            }
+            int fieldLength = fields.getInt();
+            if (fieldLength < 0 || fieldLength > fields.remaining()) {
+                throw new IOException("Client sent a malformed frame");
+            }
+            return new String(body, fields.position(), fieldLength, StandardCharsets.UTF_8);
+        }
+
+        private byte[] inflate(byte[] compressed) throws IOException {
+            inflater.reset();
+            inflater.setInput(compressed);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] chunk = new byte[1024];
+            try {
+                while (!inflater.finished()) {
+                    int count = inflater.inflate(chunk);
+                    if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new IOException("Client sent a truncated compressed frame");
+                    }
+                    out.write(chunk, 0, count);
+                    if (out.size() > MAX_INBOUND_FRAME) {
+                        throw new IOException("Client sent a compressed frame which is too large");
+                    }
+                }
+            } catch (DataFormatException e) {
+                throw new IOException(e);
+            }
+            return out.toByteArray();
+        }
+
+        private static void writeInt(ByteArrayOutputStream out, int value) {
+            out.write(value >>> 24);
+            out.write(value >>> 16);
+            out.write(value >>> 8);
+            out.write(value);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package frc.robot.test.networking;
+
+import java.util.concurrent.Future;
+
+import frc.robot.test.TestResultsStore;
+import frc.robot.test.TestManager.TestResults;
+
+/**
+ * Whatever chooses which test groups are run, answers questions, and receives results. Normally this is
+ * a {@link Workstation}, which passes everything on to the Ammeter client, but a session can also be run
+ * with nobody connected (see {@link frc.robot.test.sim.HeadlessRunner}).
+ */
+public interface TestClient {
+    /**
+     * @param testGroups The names of the test groups which may be run
+     * @return Whether each test group was selected
+     */
+    public Future<boolean[]> getChosenTestGroups(String[] testGroups);
+
+    /**
+     * Asks a yes or no question.
+     *
+     * @return Whether the true option was chosen, or null if the question was dismissed
+     * @throws UnansweredQuestionException If nobody will answer, and the test should be given a result instead
+     */
+    public Future<Boolean> askQuestion(String question, String trueOption, String falseOption);
+
+    /**
+     * Sets the answers to use for questions which are known ahead of time.
+     *
+     * @param policy The answer policy, or null for none
+     */
+    public void setAnswerPolicy(AnswerPolicy policy);
+
+    /** Receives a result as soon as it is recorded. */
+    public void publishResult(String groupName, String testName, TestResults result);
+
+    /** Receives every result once the session is over, and ends the session. */
+    public Future<?> publishResults(TestResultsStore.Snapshot results);
+
+    /** Ends the current session without results, such as when test mode is left partway through. */
+    public void abandonSession();
+}
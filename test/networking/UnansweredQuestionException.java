@@ -0,0 +1,20 @@
+package frc.robot.test.networking;
+
+import frc.robot.test.TestManager.TestSuccess;
+
+/**
+ * Thrown when a test asks a question which nobody will answer, because the {@link AnswerPolicy} has no
+ * answer for it and its fallback is to fail the test or mark it as not run. The {@link frc.robot.test.TestManager}
+ * gives the test that result instead of treating this as a crash.
+ */
+public class UnansweredQuestionException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    /** The result the test which asked should be given. */
+    public final TestSuccess m_result;
+
+    public UnansweredQuestionException(TestSuccess result, String question) {
+        super("No answer known for the question \"" + question + "\"");
+        m_result = result;
+    }
+}
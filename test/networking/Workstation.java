@@ -1,208 +1,641 @@
 package frc.robot.test.networking;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.time.LocalDateTime;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Future;
+import frc.robot.test.TestResultsStore;
 import frc.robot.test.TestManager.TestResults;
 
-// TODO - Make this auto-reconnect if the client disconnects
-// TODO - Increase robustness from strange outputs or disconnects
 // TODO - Add documentation
 
 /**
  * Represents the connection to the driver station. Used
  * to send test information to the display program on the
  * driver station.
+ *
+ * <p>All networking happens on a single background thread, using a non-blocking {@link Selector},
+ * so the robot loop never waits on the network. The server is started once and persists across
+ * mode changes. The first client to connect controls the session: it selects test groups and
+ * answers questions. If it disconnects, the next client to connect takes over where it left off.
+ * Any further clients are observers, which are sent a copy of everything sent to the controlling
+ * client, but whose input is ignored.</p>
+ *
+ * <p>Each client is a {@link ClientSession}, which encodes messages using whichever protocol the
+ * client negotiated when it connected.</p>
  * @author Hale Barber (H!)
  */
-public class Workstation implements AutoCloseable {
+public class Workstation implements TestClient, AutoCloseable {
 
     private enum ProtocolState {
         Disconnected,
         Holding,
         Running
     }
-    private ProtocolState protocolState = ProtocolState.Disconnected;
+    private volatile ProtocolState protocolState = ProtocolState.Disconnected;
+    private volatile boolean clientConnected = false;
 
-    private final String GROUP_SELECTION_TERMINATOR = "END_SELECTION";
-    private final String RESULTS_TERMINATOR = "END_RESULTS";
-    private final String QUESTION_HEADER = "BEGIN_QUESTION";
-    private final int CONNECTION_PORT = 5809;
+    public static final int DEFAULT_CONNECTION_PORT = 5809;
+    private final String ANSWER_PREFIX = "A:";
+    /** The number of result records which may wait to be written before streaming gives up. */
+    private final int STREAM_QUEUE_CAPACITY = 256;
+    /** The number of bytes an observer may fall behind by before it is disconnected. */
+    private final int MAX_OBSERVER_BACKLOG = 1 << 20;
+    /** How often, in milliseconds, to check for clients which never said hello. */
+    private final long NEGOTIATION_POLL_MILLIS = 50;
+    /** How long to wait for more questions, so questions asked in the same robot cycle are sent together. */
+    private final long QUESTION_BATCH_WINDOW_NANOS = 20_000_000L;
 
-    private ExecutorService executor = Executors.newSingleThreadExecutor();
-    private ServerSocket server;
-    private Socket client;
+    /** A question waiting to be answered by the controlling client. */
+    private static class Question {
+        final int id;
+        final String text;
+        final String trueOption;
+        final String falseOption;
+        final CompletableFuture<Boolean> answer;
+        /** Whether the question has been sent to the current controlling client. */
+        boolean sent = false;
+
+        Question(int id, String text, String trueOption, String falseOption, CompletableFuture<Boolean> answer) {
+            this.id = id;
+            this.text = text;
+            this.trueOption = trueOption;
+            this.falseOption = falseOption;
+            this.answer = answer;
+        }
+    }
+
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final Thread networkThread;
+    /** Work handed to {@link #networkThread} by the robot thread. */
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+
+    // The following are only used by the network thread
+    private ClientSession controller = null;
+    private final List<ClientSession> observers = new ArrayList<ClientSession>();
+    private String[] pendingSelection = null;
+    private CompletableFuture<boolean[]> selectionFuture = null;
+    /**
+     * Questions not yet answered, by ID, in the order they were asked. Clients which batch questions
+     * are sent every one, and others only the first.
+     */
+    private final LinkedHashMap<Integer, Question> questions = new LinkedHashMap<Integer, Question>();
+    private int nextQuestionId = 1;
+    /** When questions asked recently should be sent, from {@link System#nanoTime()}, or 0 if none are waiting. */
+    private long questionBatchDeadline = 0;
+    /** Every result record sent this session, so clients connecting partway through can catch up. */
+    private final List<Message> sessionRecords = new ArrayList<Message>();
+
+    /** Known answers to questions, or null to send every question to the client. */
+    private volatile AnswerPolicy answerPolicy = null;
+
+    /** Whether the client asked for results as each test finishes, rather than all at the end. */
+    private volatile boolean streamingResults = false;
+    /** Whether a streamed result was dropped, meaning the client needs every result again at the end. */
+    private volatile boolean streamOverflowed = false;
+    /** Records waiting to be sent by the network thread. */
+    private final BlockingQueue<Message> streamQueue = new ArrayBlockingQueue<Message>(STREAM_QUEUE_CAPACITY);
 
     public Workstation() {
-        System.out.println("TCP Server Started");
+        this(DEFAULT_CONNECTION_PORT);
+    }
+
+    /** @param port The TCP port to listen for clients on */
+    public Workstation(int port) {
         try {
-            server = new ServerSocket(CONNECTION_PORT);
+            selector = Selector.open();
+            server = ServerSocketChannel.open();
+            server.bind(new InetSocketAddress(port));
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
-        
-        executor.execute(this::findConnection);
-    }
-
-    public synchronized Future<boolean[]> getChosenTestGroups(String[] testGroups) {
-        verifyConnection();
-        verifyProtocolState(ProtocolState.Holding);
-        final PrintWriter writer = getWriter();
-        final BufferedReader reader = getReader();
-        
-        return executor.submit(() -> {
-            // Send all names, as per protocol
-            for (String testGroupName : testGroups) {
-                writer.println(testGroupName);
-            }
-            writer.println(GROUP_SELECTION_TERMINATOR);
-            System.out.println("Groups sent");
-
-            String response = reader.readLine();
-            System.out.println("Response received: " + response);
-            char[] responseChars = response.toCharArray();
-            boolean[] out = new boolean[testGroups.length];
-
-            for (int i = 0; i < responseChars.length; i++) {
-                switch (responseChars[i]) {
-                    case 'T':
-                        out[i] = true;
-                        break;
-                    case 'F':
-                        out[i] = false;
-                        break;
-                    default:
-                        throw new IllegalStateException("Client gave an invalid response char to selection request, \'" + responseChars[i] + "\'.");
-                }
-            }
+        System.out.println("TCP Server Started");
 
-            synchronized (this) {
-                protocolState = ProtocolState.Running;
+        networkThread = new Thread(this::runNetwork, "Ammeter Workstation");
+        networkThread.setDaemon(true);
+        networkThread.start();
+    }
+
+    /**
+     * Sends the names of the test groups to the controlling client, and returns its selection. If no
+     * client is connected, the names are sent once one connects.
+     *
+     * @param testGroups The names of the test groups which may be run
+     * @return Whether each test group was selected
+     */
+    @Override
+    public Future<boolean[]> getChosenTestGroups(String[] testGroups) {
+        CompletableFuture<boolean[]> out = new CompletableFuture<boolean[]>();
+        post(() -> {
+            if (selectionFuture != null) {
+                selectionFuture.cancel(false);
             }
+            pendingSelection = testGroups;
+            selectionFuture = out;
+            streamOverflowed = false;
+            streamQueue.clear();
+            sessionRecords.clear();
+            protocolState = ProtocolState.Running;
+            if (controller != null) {
+                sendSelection(controller);
+            }
+        });
+        return out;
+    }
 
-            return out;
+    /**
+     * Asks the controlling client a yes or no question. Clients which support batches of questions are
+     * sent every question asked since the last batch together, and may answer them in any order.
+     * Other clients are sent questions one at a time, in the order they are asked. If the client
+     * disconnects, unanswered questions are asked again when a client reconnects.
+     *
+     * <p>If an {@link AnswerPolicy} is set, questions it knows the answer to are answered immediately,
+     * without involving the client, and others are handled according to its fallback.</p>
+     *
+     * @return Whether the true option was chosen
+     * @throws UnansweredQuestionException If the answer isn't known and the policy's fallback fails the test or marks it not run
+     */
+    @Override
+    public Future<Boolean> askQuestion(String question, String trueOption, String falseOption) {
+        AnswerPolicy policy = answerPolicy;
+        Future<Boolean> answered = policy != null ? policy.answer(question, trueOption, falseOption) : null;
+        if (answered != null) {
+            return answered;
+        }
+
+        verifyProtocolState(ProtocolState.Running);
+        CompletableFuture<Boolean> out = new CompletableFuture<Boolean>();
+        post(() -> {
+            int id = nextQuestionId++;
+            questions.put(id, new Question(id, question, trueOption, falseOption, out));
+            if (questionBatchDeadline == 0) {
+                questionBatchDeadline = System.nanoTime() + QUESTION_BATCH_WINDOW_NANOS;
+            }
         });
+        return out;
+    }
+
+    /**
+     * Sets the answers to use for questions instead of asking the client.
+     *
+     * @param policy The answer policy, or null to ask the client every question
+     */
+    @Override
+    public void setAnswerPolicy(AnswerPolicy policy) {
+        answerPolicy = policy;
     }
 
-    public synchronized Future<Boolean> askQuestion(String question, String trueOption, String falseOption) {
-        verifyConnection();
+    /**
+     * Sends a single result to the client as soon as possible, if it asked for results to be streamed.
+     * Never blocks: if too many results are waiting to be written, this one is dropped, and every
+     * result is sent again by {@link #publishResults(TestResultsStore.Snapshot)} instead.
+     *
+     * @param groupName The name of the group the test belongs to
+     * @param testName The name of the test
+     * @param result The test's result
+     */
+    @Override
+    public void publishResult(String groupName, String testName, TestResults result) {
+        if (!streamingResults || streamOverflowed) {
+            return;
+        }
+        if (!streamQueue.offer(Message.result(groupName, testName, result))) {
+            System.out.println("Result stream overflowed, results will be sent at the end instead");
+            streamOverflowed = true;
+        } else {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Sends the results of every test, followed by the results terminator, and ends the session. When
+     * the results were streamed to the client, only the terminator is sent.
+     */
+    @Override
+    public Future<?> publishResults(TestResultsStore.Snapshot results) {
         verifyProtocolState(ProtocolState.Running);
-        final PrintWriter writer = getWriter();
-        final BufferedReader reader = getReader();
-
-        return executor.submit(() -> {
-            writer.println(QUESTION_HEADER);
-            writer.println(question);
-            writer.println(trueOption);
-            writer.println(falseOption);
-            
-            char response = reader.readLine().charAt(0);
-
-            switch (response) {
+        Message out = !streamingResults || streamOverflowed ? Message.results(results) : null;
+
+        CompletableFuture<Void> sent = new CompletableFuture<Void>();
+        post(() -> {
+            // Any streamed results still queued must go out before the terminator
+            flushStreamQueue();
+            if (out != null) {
+                broadcast(out);
+            }
+            broadcast(Message.endResults());
+            endSession();
+            sent.complete(null);
+        });
+        return sent;
+    }
+
+    /**
+     * Abandons the current session, such as when test mode is left partway through. Unanswered
+     * questions and selections are cancelled, but clients stay connected.
+     */
+    @Override
+    public void abandonSession() {
+        post(this::endSession);
+    }
+
+    private void endSession() {
+        if (selectionFuture != null && !selectionFuture.isDone()) {
+            selectionFuture.cancel(false);
+        }
+        for (Question question : questions.values()) {
+            question.answer.complete(null);
+        }
+        questions.clear();
+        pendingSelection = null;
+        selectionFuture = null;
+        sessionRecords.clear();
+        streamQueue.clear();
+        if (answerPolicy != null) {
+            answerPolicy.saveIfChanged();
+        }
+        protocolState = controller != null ? ProtocolState.Holding : ProtocolState.Disconnected;
+    }
+
+    /** Runs the given task on the network thread. */
+    private void post(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /** The body of {@link #networkThread}. Handles every connection until the workstation is closed. */
+    private void runNetwork() {
+        try {
+            while (selector.isOpen()) {
+                // Clients which haven't chosen a protocol yet must be checked on even if they say nothing
+                long timeoutMillis = anyNegotiating() ? NEGOTIATION_POLL_MILLIS : 0;
+                if (questionBatchDeadline != 0) {
+                    long batchMillis = Math.max(1, (questionBatchDeadline - System.nanoTime()) / 1_000_000);
+                    timeoutMillis = timeoutMillis == 0 ? batchMillis : Math.min(timeoutMillis, batchMillis);
+                }
+                selector.select(timeoutMillis);
+                expireNegotiations();
+
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+                flushStreamQueue();
+                if (questionBatchDeadline != 0 && System.nanoTime() - questionBatchDeadline >= 0) {
+                    questionBatchDeadline = 0;
+                    sendQuestions(null);
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    try {
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            ClientSession session = (ClientSession) key.attachment();
+                            if (key.isReadable()) {
+                                read(session);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                session.write();
+                            }
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        // A client which can't be served is dropped, rather than the server for every client
+                        if (key.attachment() != null) {
+                            disconnect((ClientSession) key.attachment());
+                        }
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            // Closed, nothing left to do
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        ClientSession session = new ClientSession(channel, key);
+        key.attach(session);
+
+        // Anything sent now is held by the session until its protocol is chosen
+        if (controller == null) {
+            controller = session;
+            clientConnected = true;
+            System.out.println("Ammeter client connected");
+            if (protocolState == ProtocolState.Running) {
+                resumeSession(session);
+            } else {
+                protocolState = ProtocolState.Holding;
+            }
+        } else {
+            observers.add(session);
+            System.out.println("Ammeter observer connected");
+            if (streamingResults) {
+                for (Message record : sessionRecords) {
+                    session.send(record);
+                }
+            }
+        }
+    }
+
+    /** Brings a client which connected in the middle of a session up to date. */
+    private void resumeSession(ClientSession session) {
+        if (pendingSelection != null) {
+            sendSelection(session);
+            return;
+        }
+        if (streamingResults) {
+            session.send(Message.resume());
+            for (Message record : sessionRecords) {
+                session.send(record);
+            }
+        }
+        sendQuestions(session);
+    }
+
+    private void sendSelection(ClientSession session) {
+        session.send(Message.selection(pendingSelection));
+        System.out.println("Groups sent");
+    }
+
+    private boolean anyNegotiating() {
+        if (controller != null && controller.isNegotiating()) {
+            return true;
+        }
+        for (ClientSession observer : observers) {
+            if (observer.isNegotiating()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Gives the line protocol to every client which didn't say hello in time. */
+    private void expireNegotiations() {
+        long now = System.nanoTime();
+        if (controller != null && controller.negotiationExpired(now)) {
+            controller.finishNegotiation();
+        }
+        for (ClientSession observer : observers) {
+            if (observer.negotiationExpired(now)) {
+                observer.finishNegotiation();
+            }
+        }
+    }
+
+    private void read(ClientSession session) throws IOException {
+        if (!session.readFromChannel()) {
+            disconnect(session);
+            return;
+        }
+
+        String message;
+        while ((message = session.nextInbound()) != null) {
+            // Observers still get to choose their protocol, but can't affect the session
+            if (session == controller) {
+                onMessage(message);
+            }
+        }
+    }
+
+    /** Handles a full message received from the controlling client. */
+    private void onMessage(String line) {
+        if (pendingSelection != null) {
+            onSelection(line);
+        } else if (!questions.isEmpty()) {
+            onAnswer(line);
+        }
+        // Anything else is unexpected, and ignored
+    }
+
+    private void onSelection(String response) {
+        System.out.println("Response received: " + response);
+
+        // Newer clients may list the capabilities they support after the selection
+        String[] responseParts = response.split(" ");
+        for (int i = 1; i < responseParts.length; i++) {
+            controller.addCapability(responseParts[i]);
+        }
+        streamingResults = controller.hasCapability(ClientSession.STREAM_CAPABILITY);
+
+        char[] responseChars = responseParts[0].toCharArray();
+        boolean[] out = new boolean[pendingSelection.length];
+        for (int i = 0; i < responseChars.length && i < out.length; i++) {
+            switch (responseChars[i]) {
                 case 'T':
-                    return true;
+                    out[i] = true;
+                    break;
                 case 'F':
-                    return false;
+                    out[i] = false;
+                    break;
                 default:
-                    throw new IllegalStateException("Client gave an invalid response char to question, \'" + response + "\'.");
+                    System.out.println("Client gave an invalid response char to selection request, \'" + responseChars[i] + "\'. Asking again.");
+                    sendSelection(controller);
+                    return;
             }
-        });
+        }
+
+        pendingSelection = null;
+        selectionFuture.complete(out);
+        sendQuestions(null);
     }
 
-    public synchronized Future<?> publishResults(Map<String, Map<String, TestResults>> results) {
-        verifyConnection();
-        verifyProtocolState(ProtocolState.Running);
-        final PrintWriter writer = getWriter();
-
-        return executor.submit(() -> {
-            for (Entry<String, Map<String, TestResults>> testGroup : results.entrySet()) {
-                writer.println("G:" + testGroup.getKey());
-
-                for (Entry<String, TestResults> test : testGroup.getValue().entrySet()) {
-                    String prefix = "0:";
-                    switch (test.getValue().m_successResult) {
-                        case SUCCESS:
-                            prefix = "S:";
-                            break;
-                        case FAIL:
-                            prefix = "F:";
-                            break;
-                        case NOTRUN:
-                            prefix = "N:";
-                            break;
-                    }
+    /**
+     * Handles an answer. Clients which batch questions answer with {@code A:<id>:T} or {@code A:<id>:F},
+     * and may also answer the first question with a bare {@code T} or {@code F}, as other clients do.
+     */
+    private void onAnswer(String response) {
+        Question question = questions.values().iterator().next();
+        String answerText = response;
+        if (response.startsWith(ANSWER_PREFIX)) {
+            int separator = response.indexOf(':', ANSWER_PREFIX.length());
+            Question identified = null;
+            try {
+                identified = separator < 0 ? null
+                    : questions.get(Integer.parseInt(response.substring(ANSWER_PREFIX.length(), separator)));
+            } catch (NumberFormatException e) {
+                // Reported below
+            }
+            if (identified == null) {
+                System.out.println("Client answered a question which isn't waiting for an answer, \"" + response + "\". Ignoring it.");
+                return;
+            }
+            question = identified;
+            answerText = response.substring(separator + 1);
+        }
 
-                    writer.println(prefix + test.getKey());
-                    writer.println(test.getValue().m_message);
+        char answer = answerText.isEmpty() ? ' ' : answerText.charAt(0);
+        if (answer != 'T' && answer != 'F') {
+            System.out.println("Client gave an invalid response char to question, \'" + answer + "\'. Asking again.");
+            question.sent = false;
+            sendQuestions(controller);
+            return;
+        }
+
+        questions.remove(question.id);
+        question.answer.complete(answer == 'T');
+        if (answerPolicy != null) {
+            answerPolicy.learn(question.text, question.trueOption, question.falseOption, answer == 'T');
+        }
+        sendQuestions(null);
+    }
+
+    /**
+     * Sends questions the controlling client hasn't been sent yet. A controlling client which batches
+     * questions is sent all of them, and any other only the first, once. Each client is sent them in
+     * the form it asked for: in one batch if it batches questions, otherwise one message each.
+     *
+     * @param only The client to send them to, or null to send them to the controlling client and all observers
+     */
+    private void sendQuestions(ClientSession only) {
+        if (controller == null || pendingSelection != null || questions.isEmpty()) {
+            return;
+        }
+
+        List<Question> toSend = new ArrayList<Question>();
+        if (controller.hasCapability(ClientSession.QBATCH_CAPABILITY)) {
+            for (Question question : questions.values()) {
+                if (!question.sent) {
+                    toSend.add(question);
                 }
             }
+        } else {
+            Question first = questions.values().iterator().next();
+            if (!first.sent) {
+                toSend.add(first);
+            }
+        }
+        if (toSend.isEmpty()) {
+            return;
+        }
 
-            writer.println(RESULTS_TERMINATOR);
+        List<String> batchFields = new ArrayList<String>();
+        List<Message> singles = new ArrayList<Message>();
+        for (Question question : toSend) {
+            question.sent = true;
+            batchFields.add(Integer.toString(question.id));
+            batchFields.add(question.text);
+            batchFields.add(question.trueOption);
+            batchFields.add(question.falseOption);
+            singles.add(Message.question(question.text, question.trueOption, question.falseOption));
+        }
+        Message batch = Message.questionBatch(batchFields.toArray(new String[0]));
 
-            synchronized (this) {
-                protocolState = ProtocolState.Holding;
+        if (only != null) {
+            sendQuestionsTo(only, batch, singles);
+            return;
+        }
+        sendQuestionsTo(controller, batch, singles);
+        for (int i = observers.size() - 1; i >= 0; i--) {
+            ClientSession observer = observers.get(i);
+            if (keepUp(observer)) {
+                sendQuestionsTo(observer, batch, singles);
             }
-        });
+        }
     }
 
-    private void findConnection() {
-        try {
-            Socket socket = server.accept();
-            synchronized (this) {
-                protocolState = ProtocolState.Holding;
-                client = socket;
+    private static void sendQuestionsTo(ClientSession session, Message batch, List<Message> singles) {
+        if (session.hasCapability(ClientSession.QBATCH_CAPABILITY)) {
+            session.send(batch);
+        } else {
+            for (Message single : singles) {
+                session.send(single);
             }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
         }
     }
 
-    private void verifyConnection() {
-        if (!hasConnection()) {
-            System.out.println(LocalDateTime.now());
-            throw new IllegalStateException("No client Ammeter program has been connected. Please start one on the driver station and try again.");
+    /** Moves queued result records into the outgoing buffers, which are written together. */
+    private void flushStreamQueue() {
+        Message record;
+        while ((record = streamQueue.poll()) != null) {
+            sessionRecords.add(record);
+            broadcast(record);
         }
     }
 
-    private void verifyProtocolState(ProtocolState correct) {
-        if (protocolState != correct) {throw new IllegalStateException("Protocol dictates this action cannot be performed currently.");}
+    /** Sends a message to the controlling client and every observer, each in its own protocol. */
+    private void broadcast(Message message) {
+        if (controller != null) {
+            controller.send(message);
+        }
+        for (int i = observers.size() - 1; i >= 0; i--) {
+            ClientSession observer = observers.get(i);
+            if (keepUp(observer)) {
+                observer.send(message);
+            }
+        }
     }
 
-    private PrintWriter getWriter() {
-        try {
-            return new PrintWriter(client.getOutputStream(), true);
-        } catch (IOException e) {
-            throw new IllegalStateException("No client Ammeter program has been connected. Please start one on the driver station and try again.");
+    /** Disconnects an observer which has fallen too far behind to be sent more. @return Whether it is still connected */
+    private boolean keepUp(ClientSession observer) {
+        if (observer.getOutgoingBytes() > MAX_OBSERVER_BACKLOG) {
+            System.out.println("Ammeter observer fell too far behind, disconnecting it");
+            disconnect(observer);
+            return false;
         }
+        return true;
     }
 
-    private BufferedReader getReader() {
-        try {
-            return new BufferedReader(new InputStreamReader(client.getInputStream()));
-        } catch (IOException e) {
-            throw new IllegalStateException("No client Ammeter program has been connected. Please start one on the driver station and try again.");
+    private void disconnect(ClientSession session) {
+        session.close();
+
+        if (session == controller) {
+            controller = null;
+            for (Question question : questions.values()) {
+                question.sent = false;
+            }
+            clientConnected = false;
+            System.out.println("Ammeter client disconnected, waiting for it to reconnect");
+            if (protocolState == ProtocolState.Holding) {
+                protocolState = ProtocolState.Disconnected;
+            }
+        } else {
+            observers.remove(session);
         }
     }
 
-    public synchronized boolean hasConnection() {
-        return client != null && !client.isClosed();
+    private void verifyProtocolState(ProtocolState correct) {
+        if (protocolState != correct) {throw new IllegalStateException("Protocol dictates this action cannot be performed currently.");}
+    }
+
+    /** @return Whether a client is connected to control the session. */
+    public boolean hasConnection() {
+        return clientConnected;
     }
 
     @Override
     public void close() {
-        executor.shutdownNow();
         try {
-            if (client != null) client.close();
-            if (server != null) server.close();
+            selector.close();
+            server.close();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -0,0 +1,97 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.test.sim;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+import frc.robot.test.TestResultsStore;
+import frc.robot.test.TestManager.TestResults;
+import frc.robot.test.TestManager.TestSuccess;
+import frc.robot.test.networking.AnswerPolicy;
+import frc.robot.test.networking.Message;
+import frc.robot.test.networking.TestClient;
+import frc.robot.test.networking.UnansweredQuestionException;
+
+/**
+ * A {@link TestClient} with nobody behind it. Test groups are selected by name ahead of time, questions
+ * are answered by an {@link AnswerPolicy}, and results are printed and kept for the
+ * {@link HeadlessRunner} to write out.
+ */
+public class HeadlessClient implements TestClient {
+    private final Set<String> selectedGroups;
+    private final Set<String> unknownGroups = new HashSet<String>();
+    private volatile AnswerPolicy answerPolicy;
+    private volatile TestResultsStore.Snapshot results = null;
+
+    /**
+     * @param selectedGroups The names of the test groups to run, or null to run every group
+     * @param answerPolicy The answers to questions. Questions it would ask are failed, as there is nobody to ask
+     */
+    public HeadlessClient(Set<String> selectedGroups, AnswerPolicy answerPolicy) {
+        this.selectedGroups = selectedGroups;
+        this.answerPolicy = answerPolicy;
+    }
+
+    @Override
+    public Future<boolean[]> getChosenTestGroups(String[] testGroups) {
+        boolean[] chosen = new boolean[testGroups.length];
+        for (int i = 0; i < testGroups.length; i++) {
+            chosen[i] = selectedGroups == null || selectedGroups.contains(testGroups[i]);
+        }
+        if (selectedGroups != null) {
+            unknownGroups.addAll(selectedGroups);
+            for (String group : testGroups) {
+                unknownGroups.remove(group);
+            }
+            for (String group : unknownGroups) {
+                System.out.println("No test group is named \"" + group + "\"");
+            }
+        }
+        return CompletableFuture.completedFuture(chosen);
+    }
+
+    @Override
+    public Future<Boolean> askQuestion(String question, String trueOption, String falseOption) {
+        AnswerPolicy policy = answerPolicy;
+        Future<Boolean> answered = policy != null ? policy.answer(question, trueOption, falseOption) : null;
+        if (answered == null) {
+            throw new UnansweredQuestionException(TestSuccess.FAIL, question);
+        }
+        return answered;
+    }
+
+    @Override
+    public void setAnswerPolicy(AnswerPolicy policy) {
+        answerPolicy = policy;
+    }
+
+    @Override
+    public void publishResult(String groupName, String testName, TestResults result) {
+        System.out.println(Message.statusOf(result.m_successResult) + " " + groupName + " / " + testName
+            + (result.m_message == null || result.m_message.isEmpty() ? "" : ": " + result.m_message));
+    }
+
+    @Override
+    public Future<?> publishResults(TestResultsStore.Snapshot results) {
+        this.results = results;
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public void abandonSession() {}
+
+    /** @return The results of the session, or null if it never finished or was cut off. */
+    public TestResultsStore.Snapshot getResults() {
+        return results;
+    }
+
+    /** @return The names of selected groups which weren't offered, which usually means a typo in the configuration. */
+    public Set<String> getUnknownGroups() {
+        return unknownGroups;
+    }
+}
@@ -0,0 +1,180 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.test.sim;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.locks.LockSupport;
+
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import frc.robot.Robot;
+import frc.robot.test.TestManager;
+import frc.robot.test.TestResultsStore;
+import frc.robot.test.TestManager.TestSuccess;
+import frc.robot.test.networking.AnswerPolicy;
+import frc.robot.test.networking.Workstation;
+
+/**
+ * Runs a whole test session in simulation with no client, such as on a build server. The {@link Robot}
+ * is put in test mode and its loop is run until every selected test has a result, then the results are
+ * written as JUnit XML and JSON and the process exits with a code saying whether everything passed.
+ *
+ * <p>The runner is configured by a properties file (by default {@value #DEFAULT_CONFIG_FILE}):</p>
+ * <ul>
+ * <li>{@code groups}: the names of the test groups to run, separated by commas. Every group is run if left out.</li>
+ * <li>{@code answers}: an answer file (see {@link AnswerPolicy}) to answer questions from.</li>
+ * <li>{@code fallback}: what to do with questions missing from the answer file: {@code FAIL} (the default)
+ *     or {@code NOTRUN}. There is nobody to ask, so {@code ASK} is the same as {@code FAIL}.</li>
+ * <li>{@code junit} and {@code json}: where to write the results.</li>
+ * <li>{@code timeout}: how many seconds of robot time the session may take before it is cut off.</li>
+ * <li>{@code clock}: {@code fast} (the default) to step the simulated clock one loop period at a time as
+ *     fast as the robot code runs, or {@code realtime} to run the loop at its real period.</li>
+ * <li>{@code port}: serve the session to a client on this port, as a {@link Workstation} on a robot would,
+ *     instead of running it unattended. The client selects the groups, so {@code groups} is ignored, and
+ *     the loop waits in real time until it connects. This is how {@link ShardCoordinator} runs shards.</li>
+ * </ul>
+ *
+ * <p>With the fast clock, the simulated clock is paused and only moves when the runner steps it, so
+ * {@link edu.wpi.first.wpilibj.Timer}s, and so {@link frc.robot.test.TestUtil.TimedTest}s, see exactly one
+ * loop period pass each cycle. Timeouts and test durations are measured on the same clock (see
+ * {@link TestManager#setClock(java.util.function.LongSupplier)}), so a session's results don't depend on
+ * how fast the computer running it is.</p>
+ */
+public class HeadlessRunner {
+    public static final String DEFAULT_CONFIG_FILE = "ammeter-ci.properties";
+    /** Every test which was run passed. */
+    public static final int EXIT_PASSED = 0;
+    /** At least one test failed. */
+    public static final int EXIT_FAILED = 1;
+    /** The session was cut off, or couldn't be run as configured. */
+    public static final int EXIT_INCOMPLETE = 2;
+
+    private static final long DISCONNECT_WAIT_NANOS = 10_000_000_000L;
+
+    private final Properties config;
+
+    /** @param config The runner's configuration, as described by {@link HeadlessRunner} */
+    public HeadlessRunner(Properties config) {
+        this.config = config;
+    }
+
+    /**
+     * Runs the session and exits.
+     *
+     * @param args The path of the configuration file, if not {@value #DEFAULT_CONFIG_FILE}
+     */
+    public static void main(String[] args) {
+        Properties config;
+        try {
+            config = SimSessions.loadConfig(args);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        System.exit(new HeadlessRunner(config).run());
+    }
+
+    /** @return The exit code: {@link #EXIT_PASSED}, {@link #EXIT_FAILED} or {@link #EXIT_INCOMPLETE} */
+    public int run() {
+        String port = config.getProperty("port");
+        Workstation workstation = port != null ? new Workstation(Integer.parseInt(port.trim())) : null;
+        HeadlessClient client = workstation == null ? new HeadlessClient(SimSessions.readGroups(config), readAnswers()) : null;
+        TestManager.useClient(workstation != null ? workstation : client);
+
+        SimSessions.startTestMode();
+
+        double timeoutSeconds = Double.parseDouble(config.getProperty("timeout", "600"));
+        boolean fastClock = !config.getProperty("clock", "fast").trim().equals("realtime");
+        if (fastClock) {
+            SimHooks.pauseTiming();
+            TestManager.setClock(() -> RobotController.getFPGATime() * 1000L);
+        }
+        boolean finished;
+        try (Robot robot = new Robot()) {
+            robot.robotInit();
+            if (workstation != null) {
+                TestManager.setAnswerPolicy(readAnswers());
+            }
+            robot.simulationInit();
+            robot.testInit();
+            finished = runLoop(robot, (long) (timeoutSeconds / robot.getPeriod()), fastClock, workstation);
+            if (!finished) {
+                System.out.println("Session timed out after " + timeoutSeconds + " s");
+                DriverStationSim.setEnabled(false);
+                DriverStationSim.notifyNewData();
+                robot.disabledInit();
+            }
+        }
+
+        TestResultsStore.Snapshot results = client != null ? client.getResults() : TestManager.results.snapshot();
+        if (workstation != null) {
+            awaitDisconnect(workstation);
+            workstation.close();
+        }
+        if (results == null) {
+            System.out.println("The session ended before any tests were run");
+            return EXIT_INCOMPLETE;
+        }
+        try {
+            ResultReports.writeJUnit(results, Path.of(config.getProperty("junit", "ammeter-results.xml")));
+            ResultReports.writeJson(results, Path.of(config.getProperty("json", "ammeter-results.json")));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        int[] counts = ResultReports.countStatuses(results, -1);
+        System.out.println(String.format("%d passed, %d failed, %d not run",
+            counts[TestSuccess.SUCCESS.ordinal()], counts[TestSuccess.FAIL.ordinal()], counts[TestSuccess.NOTRUN.ordinal()]));
+        if (!finished || (client != null && !client.getUnknownGroups().isEmpty())) {
+            return EXIT_INCOMPLETE;
+        }
+        return counts[TestSuccess.FAIL.ordinal()] > 0 ? EXIT_FAILED : EXIT_PASSED;
+    }
+
+    /**
+     * Runs the robot's test mode loop once per period, as {@link edu.wpi.first.wpilibj.TimedRobot} would.
+     * With the fast clock, the period is stepped on the simulated clock instead of waited for. When
+     * serving a client, cycles before it connects are run in real time and don't count.
+     *
+     * @return Whether the session finished within the given number of cycles
+     */
+    private boolean runLoop(Robot robot, long maxCycles, boolean fastClock, Workstation workstation) {
+        long periodNanos = (long) (robot.getPeriod() * 1E9);
+        long nextCycle = System.nanoTime();
+        for (long cycle = 0; cycle < maxCycles; cycle++) {
+            robot.testPeriodic();
+            robot.robotPeriodic();
+            robot.simulationPeriodic();
+            if (TestManager.testsFinished) {
+                return true;
+            }
+            if (workstation != null && !workstation.hasConnection()) {
+                cycle--;
+            } else if (fastClock) {
+                SimHooks.stepTiming(robot.getPeriod());
+                continue;
+            }
+            nextCycle += periodNanos;
+            LockSupport.parkNanos(nextCycle - System.nanoTime());
+        }
+        return false;
+    }
+
+    /** Gives a served client a few seconds to receive the results and hang up before the server closes. */
+    private static void awaitDisconnect(Workstation workstation) {
+        long deadline = System.nanoTime() + DISCONNECT_WAIT_NANOS;
+        while (workstation.hasConnection() && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(10_000_000L);
+        }
+    }
+
+    private AnswerPolicy readAnswers() {
+        String answers = config.getProperty("answers");
+        AnswerPolicy policy = answers != null ? AnswerPolicy.load(Path.of(answers)) : new AnswerPolicy(null);
+        return policy.setFallback(AnswerPolicy.Fallback.valueOf(config.getProperty("fallback", "FAIL").trim()));
+    }
+}
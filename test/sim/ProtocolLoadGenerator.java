@@ -0,0 +1,105 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.test.sim;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import frc.robot.test.SyntheticGroup;
+import frc.robot.test.Test;
+import frc.robot.test.TestManager;
+import frc.robot.test.TestUtil;
+import frc.robot.test.networking.FakeClient;
+import frc.robot.test.networking.Workstation;
+
+/**
+ * Runs a synthetic suite through a real {@link Workstation} with a {@link FakeClient} on the other end,
+ * to measure the protocol under load: how long until the first result arrives, how long the whole
+ * session takes, and how many bytes cross the wire.
+ *
+ * <p>Arguments are given as {@code key=value}:</p>
+ * <ul>
+ * <li>{@code groups} and {@code tests}: how many groups, and how many instant tests in each (by default 1000 and 5).</li>
+ * <li>{@code questions}: ask a question as every nth test, or never if 0 (the default).</li>
+ * <li>{@code caps}: the capabilities the client asks for, separated by commas, such as {@code STREAM,QBATCH}.</li>
+ * <li>{@code period}: the robot loop period in milliseconds (by default 20), or 0 to run it as fast as it goes.</li>
+ * <li>{@code port}: the port to serve on (by default {@value #DEFAULT_PORT}, so a real client isn't disturbed).</li>
+ * </ul>
+ */
+public class ProtocolLoadGenerator {
+    public static final int DEFAULT_PORT = 5810;
+
+    private ProtocolLoadGenerator() {}
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<String, String>();
+        for (String arg : args) {
+            int split = arg.indexOf('=');
+            if (split < 0) {
+                throw new IllegalArgumentException("Expected key=value but got \"" + arg + "\"");
+            }
+            options.put(arg.substring(0, split), arg.substring(split + 1));
+        }
+        int groups = Integer.parseInt(options.getOrDefault("groups", "1000"));
+        int tests = Integer.parseInt(options.getOrDefault("tests", "5"));
+        int questions = Integer.parseInt(options.getOrDefault("questions", "0"));
+        String caps = options.getOrDefault("caps", "");
+        long periodNanos = Long.parseLong(options.getOrDefault("period", "20")) * 1_000_000L;
+        int port = Integer.parseInt(options.getOrDefault("port", Integer.toString(DEFAULT_PORT)));
+
+        Workstation workstation = new Workstation(port);
+        TestManager.useClient(workstation);
+        TestManager.load();
+        TestManager.init();
+        int testNumber = 0;
+        for (int i = 0; i < groups; i++) {
+            Test[] groupTests = new Test[tests];
+            for (int j = 0; j < tests; j++, testNumber++) {
+                groupTests[j] = questions > 0 && testNumber % questions == questions - 1
+                    ? new TestUtil.QuestionTest("Question " + testNumber + "?", "Test " + j)
+                    : new TestUtil.InstantTest(() -> {}, "Test " + j);
+            }
+            TestManager.queueGroupToTest(new SyntheticGroup("Group " + i, groupTests));
+        }
+
+        AtomicReference<Object> outcome = new AtomicReference<Object>();
+        Thread clientThread = new Thread(() -> {
+            try (FakeClient client = new FakeClient("localhost", port)) {
+                client.withCapabilities(caps.isEmpty() ? new String[0] : caps.split(","));
+                outcome.set(client.runSession());
+            } catch (IOException | RuntimeException e) {
+                outcome.set(e);
+            }
+        }, "Fake client");
+        clientThread.start();
+
+        long nextCycle = System.nanoTime();
+        long cycles = 0;
+        while (!TestManager.testsFinished && clientThread.isAlive()) {
+            TestManager.periodic();
+            cycles++;
+            nextCycle += periodNanos;
+            LockSupport.parkNanos(nextCycle - System.nanoTime());
+        }
+        clientThread.join();
+        workstation.close();
+
+        if (outcome.get() instanceof Exception) {
+            throw (Exception) outcome.get();
+        }
+        FakeClient.SessionReport report = (FakeClient.SessionReport) outcome.get();
+        System.out.println(String.format("%d groups of %d tests, capabilities [%s], %d robot cycles",
+            groups, tests, caps, cycles));
+        System.out.println(report);
+        int expected = groups * tests;
+        if (report.m_results.size() < expected) {
+            System.out.println("Expected at least " + expected + " results");
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.test.sim;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import frc.robot.test.TestManager;
+import frc.robot.test.TestResultsStore;
+import frc.robot.test.TestManager.TestResults;
+import frc.robot.test.TestManager.TestSuccess;
+
+/** Writes the results of a session in formats build servers understand. */
+public class ResultReports {
+    private ResultReports() {}
+
+    /**
+     * Writes the results as JUnit XML, with a test suite for each group. Failed tests are reported as
+     * failures and tests which weren't run as skipped. The session summary is left out.
+     *
+     * @param results The results to write
+     * @param file Where to write them
+     */
+    public static void writeJUnit(TestResultsStore.Snapshot results, Path file) throws IOException {
+        int[] totals = countStatuses(results, -1);
+        StringBuilder out = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        out.append("<testsuites name=\"Ammeter\" tests=\"").append(totals[0] + totals[1] + totals[2])
+            .append("\" failures=\"").append(totals[TestSuccess.FAIL.ordinal()])
+            .append("\" skipped=\"").append(totals[TestSuccess.NOTRUN.ordinal()]).append("\">\n");
+
+        for (int group = 0; group < results.getGroupCount(); group++) {
+            String groupName = results.getGroupName(group);
+            if (groupName.equals(TestManager.SESSION_SUMMARY_GROUP)) {
+                continue;
+            }
+            int[] counts = countStatuses(results, group);
+            out.append("  <testsuite name=\"").append(xml(groupName))
+                .append("\" tests=\"").append(counts[0] + counts[1] + counts[2])
+                .append("\" failures=\"").append(counts[TestSuccess.FAIL.ordinal()])
+                .append("\" skipped=\"").append(counts[TestSuccess.NOTRUN.ordinal()]).append("\">\n");
+            for (int id = results.firstInGroup(group); id >= 0; id = results.nextInGroup(id)) {
+                TestResultsStore.Entry entry = results.get(id);
+                TestResults result = entry.m_result;
+                out.append("    <testcase classname=\"").append(xml(groupName))
+                    .append("\" name=\"").append(xml(entry.m_name))
+                    .append("\" time=\"").append(String.format("%.6f", result.m_setupToClosedownNanos / 1E9)).append("\"");
+                if (result.m_successResult == TestSuccess.SUCCESS) {
+                    out.append("/>\n");
+                    continue;
+                }
+                String element = result.m_successResult == TestSuccess.FAIL ? "failure" : "skipped";
+                out.append(">\n      <").append(element).append(" message=\"").append(xml(result.m_message)).append("\"/>\n");
+                out.append("    </testcase>\n");
+            }
+            out.append("  </testsuite>\n");
+        }
+        out.append("</testsuites>\n");
+        write(file, out);
+    }
+
+    /**
+     * Writes the results as JSON: the number of tests with each status, and each group's results in the
+     * order they were recorded, along with their timing.
+     *
+     * @param results The results to write
+     * @param file Where to write them
+     */
+    public static void writeJson(TestResultsStore.Snapshot results, Path file) throws IOException {
+        int[] totals = countStatuses(results, -1);
+        StringBuilder out = new StringBuilder("{\n");
+        out.append("  \"passed\": ").append(totals[TestSuccess.SUCCESS.ordinal()]).append(",\n");
+        out.append("  \"failed\": ").append(totals[TestSuccess.FAIL.ordinal()]).append(",\n");
+        out.append("  \"notRun\": ").append(totals[TestSuccess.NOTRUN.ordinal()]).append(",\n");
+        out.append("  \"groups\": [");
+        for (int group = 0; group < results.getGroupCount(); group++) {
+            out.append(group == 0 ? "\n" : ",\n");
+            out.append("    {\"name\": ").append(json(results.getGroupName(group))).append(", \"results\": [");
+            boolean first = true;
+            for (int id = results.firstInGroup(group); id >= 0; id = results.nextInGroup(id)) {
+                TestResultsStore.Entry entry = results.get(id);
+                TestResults result = entry.m_result;
+                out.append(first ? "\n" : ",\n");
+                first = false;
+                out.append("      {\"id\": ").append(entry.m_id)
+                    .append(", \"name\": ").append(json(entry.m_name))
+                    .append(", \"status\": ").append(json(result.m_successResult.name()))
+                    .append(", \"message\": ").append(json(result.m_message));
+                if (result.hasTiming()) {
+                    out.append(", \"cycles\": ").append(result.m_cycles)
+                        .append(", \"wallNanos\": ").append(result.m_wallNanos)
+                        .append(", \"runNanos\": ").append(result.m_setupToClosedownNanos)
+                        .append(", \"busyNanos\": ").append(result.m_periodicLatency.getTotalNanos())
+                        .append(", \"maxPeriodicNanos\": ").append(result.m_periodicLatency.getMaxNanos());
+                }
+                out.append("}");
+            }
+            out.append(first ? "]}" : "\n    ]}");
+        }
+        out.append(results.getGroupCount() == 0 ? "]\n}\n" : "\n  ]\n}\n");
+        write(file, out);
+    }
+
+    /**
+     * @param group The index of the group to count, or -1 for every group
+     * @return The number of results with each status, indexed by {@link TestSuccess#ordinal()}
+     */
+    static int[] countStatuses(TestResultsStore.Snapshot results, int group) {
+        int[] counts = new int[TestSuccess.values().length];
+        for (int id = 0; id < results.size(); id++) {
+            TestResultsStore.Entry entry = results.get(id);
+            if (group < 0 ? !entry.m_group.equals(TestManager.SESSION_SUMMARY_GROUP) : entry.m_groupIndex == group) {
+                counts[entry.m_result.m_successResult.ordinal()]++;
+            }
+        }
+        return counts;
+    }
+
+    private static void write(Path file, CharSequence contents) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Files.writeString(file, contents, StandardCharsets.UTF_8);
+    }
+
+    private static String xml(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder out = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char next = text.charAt(i);
+            switch (next) {
+                case '&': out.append("&amp;"); break;
+                case '<': out.append("&lt;"); break;
+                case '>': out.append("&gt;"); break;
+                case '"': out.append("&quot;"); break;
+                case '\n': out.append("&#10;"); break;
+                default:
+                    if (next >= 0x20 || next == '\t') {
+                        out.append(next);
+                    }
+            }
+        }
+        return out.toString();
+    }
+
+    private static String json(String text) {
+        if (text == null) {
+            return "\"\"";
+        }
+        StringBuilder out = new StringBuilder(text.length() + 2).append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char next = text.charAt(i);
+            switch (next) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\t': out.append("\\t"); break;
+                case '\r': out.append("\\r"); break;
+                default:
+                    if (next < 0x20) {
+                        out.append(String.format("\\u%04x", (int) next));
+                    } else {
+                        out.append(next);
+                    }
+            }
+        }
+        return out.append('"').toString();
+    }
+}
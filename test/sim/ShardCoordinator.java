@@ -0,0 +1,256 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.test.sim;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.net.ConnectException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import frc.robot.Robot;
+import frc.robot.test.GroupPartition;
+import frc.robot.test.TestGroup;
+import frc.robot.test.TestManager;
+import frc.robot.test.TestResultsStore;
+import frc.robot.test.TestManager.TestResults;
+import frc.robot.test.TestManager.TestSuccess;
+import frc.robot.test.networking.ClientSession;
+import frc.robot.test.networking.FakeClient;
+import frc.robot.test.networking.Message;
+
+/**
+ * Runs a session split across several simulated robot processes, so a large suite takes about as long
+ * as its largest shard rather than all of its groups together. The groups are found by starting the
+ * {@link Robot} in test mode in this process, then split by {@link GroupPartition}, which keeps groups
+ * depending on each other in the same shard. Each shard is a {@link HeadlessRunner} serving its session
+ * on its own port, and a {@link FakeClient} selects the shard's groups there and collects its results.
+ * The results of every shard are merged, in the order the groups were queued, and written as one report.
+ *
+ * <p>The coordinator reads the same properties file as the {@link HeadlessRunner}, and passes
+ * {@code answers}, {@code fallback}, {@code timeout} and {@code clock} on to each shard. {@code groups},
+ * {@code junit} and {@code json} apply to the merged session. It also reads:</p>
+ * <ul>
+ * <li>{@code shards}: how many robot processes to run, by default one per processor.</li>
+ * <li>{@code port}: the port of the first shard, with each other shard on the next (by default {@value #DEFAULT_BASE_PORT}).</li>
+ * <li>{@code shardDir}: where each shard's configuration, log and reports are written (by default {@code ammeter-shards}).</li>
+ * </ul>
+ */
+public class ShardCoordinator {
+    public static final int DEFAULT_BASE_PORT = 5810;
+    /** How long a shard may take to start serving its session. */
+    private static final long CONNECT_TIMEOUT_NANOS = 60_000_000_000L;
+
+    /** One robot process, and what it sent back. */
+    private static class Shard {
+        final int m_index;
+        final List<String> m_groups = new ArrayList<String>();
+        Process m_process;
+        FakeClient.SessionReport m_report = null;
+        Exception m_error = null;
+        int m_exitCode = HeadlessRunner.EXIT_INCOMPLETE;
+
+        Shard(int index) {
+            m_index = index;
+        }
+    }
+
+    private final Properties config;
+
+    /** @param config The coordinator's configuration, as described by {@link ShardCoordinator} */
+    public ShardCoordinator(Properties config) {
+        this.config = config;
+    }
+
+    /**
+     * Runs the sharded session and exits with the same codes as the {@link HeadlessRunner}.
+     *
+     * @param args The path of the configuration file, if not {@value HeadlessRunner#DEFAULT_CONFIG_FILE}
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        System.exit(new ShardCoordinator(SimSessions.loadConfig(args)).run());
+    }
+
+    /** @return The exit code, as for {@link HeadlessRunner#run()} */
+    public int run() throws IOException, InterruptedException {
+        List<TestGroup> groups = findGroups();
+        int shardCount = Integer.parseInt(config.getProperty("shards",
+            Integer.toString(Runtime.getRuntime().availableProcessors())).trim());
+        List<List<TestGroup>> partition = GroupPartition.partition(groups, shardCount);
+
+        Path shardDir = Path.of(config.getProperty("shardDir", "ammeter-shards"));
+        Files.createDirectories(shardDir);
+        int basePort = Integer.parseInt(config.getProperty("port", Integer.toString(DEFAULT_BASE_PORT)).trim());
+        long start = System.nanoTime();
+        List<Shard> shards = new ArrayList<Shard>();
+        for (List<TestGroup> shardGroups : partition) {
+            if (shardGroups.isEmpty()) {
+                continue;
+            }
+            Shard shard = new Shard(shards.size());
+            for (TestGroup group : shardGroups) {
+                shard.m_groups.add(group.getName());
+            }
+            shard.m_process = launch(shard, shardDir, basePort + shard.m_index);
+            shards.add(shard);
+        }
+        System.out.println("Split " + groups.size() + " test groups into " + shards.size() + " shards");
+
+        List<Thread> clients = new ArrayList<Thread>();
+        for (Shard shard : shards) {
+            Thread client = new Thread(() -> collect(shard, basePort + shard.m_index), "Shard " + shard.m_index + " client");
+            client.start();
+            clients.add(client);
+        }
+        for (Thread client : clients) {
+            client.join();
+        }
+        boolean complete = true;
+        for (Shard shard : shards) {
+            if (shard.m_error != null) {
+                System.out.println("Shard " + shard.m_index + " failed: " + shard.m_error.getMessage());
+                shard.m_process.destroyForcibly();
+            }
+            shard.m_exitCode = shard.m_process.waitFor();
+            complete &= shard.m_report != null && shard.m_exitCode != HeadlessRunner.EXIT_INCOMPLETE;
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        TestResultsStore.Snapshot results = merge(groups, shards, elapsedNanos);
+        ResultReports.writeJUnit(results, Path.of(config.getProperty("junit", "ammeter-results.xml")));
+        ResultReports.writeJson(results, Path.of(config.getProperty("json", "ammeter-results.json")));
+
+        int[] counts = ResultReports.countStatuses(results, -1);
+        System.out.println(String.format("%d passed, %d failed, %d not run in %.2f s",
+            counts[TestSuccess.SUCCESS.ordinal()], counts[TestSuccess.FAIL.ordinal()], counts[TestSuccess.NOTRUN.ordinal()],
+            elapsedNanos / 1E9));
+        if (!complete) {
+            return HeadlessRunner.EXIT_INCOMPLETE;
+        }
+        return counts[TestSuccess.FAIL.ordinal()] > 0 ? HeadlessRunner.EXIT_FAILED : HeadlessRunner.EXIT_PASSED;
+    }
+
+    /**
+     * Starts the robot in test mode just far enough for its subsystems to queue their test groups. No
+     * tests are run, and no server is started.
+     *
+     * @return The groups selected by the {@code groups} property, in the order they were queued
+     */
+    private List<TestGroup> findGroups() {
+        TestManager.useClient(new HeadlessClient(Set.of(), null));
+        SimSessions.startTestMode();
+
+        List<TestGroup> groups = new ArrayList<TestGroup>();
+        try (Robot robot = new Robot()) {
+            robot.robotInit();
+            robot.simulationInit();
+            robot.testInit();
+            robot.robotPeriodic();
+            Set<String> selected = SimSessions.readGroups(config);
+            for (TestGroup group : TestManager.getQueuedGroups()) {
+                if (selected == null || selected.contains(group.getName())) {
+                    groups.add(group);
+                }
+            }
+        }
+        return groups;
+    }
+
+    /** Writes the shard's configuration and starts its robot process, logging to a file beside it. */
+    private Process launch(Shard shard, Path shardDir, int port) throws IOException {
+        Properties shardConfig = new Properties();
+        for (String key : new String[] {"answers", "timeout", "clock"}) {
+            if (config.getProperty(key) != null) {
+                shardConfig.setProperty(key, config.getProperty(key));
+            }
+        }
+        // Nobody is behind the coordinator's client, so there is nobody to ask either
+        String fallback = config.getProperty("fallback", "FAIL").trim();
+        shardConfig.setProperty("fallback", fallback.equals("ASK") ? "FAIL" : fallback);
+        shardConfig.setProperty("port", Integer.toString(port));
+        shardConfig.setProperty("junit", shardDir.resolve("shard-" + shard.m_index + ".xml").toString());
+        shardConfig.setProperty("json", shardDir.resolve("shard-" + shard.m_index + ".json").toString());
+        Path configFile = shardDir.resolve("shard-" + shard.m_index + ".properties");
+        try (Writer writer = Files.newBufferedWriter(configFile, StandardCharsets.UTF_8)) {
+            shardConfig.store(writer, "Shard " + shard.m_index + " of a ShardCoordinator session");
+        }
+
+        ProcessBuilder builder = new ProcessBuilder(
+            Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+            "-cp", System.getProperty("java.class.path"),
+            "-Djava.library.path=" + System.getProperty("java.library.path"),
+            HeadlessRunner.class.getName(),
+            configFile.toString()
+        );
+        builder.redirectErrorStream(true);
+        builder.redirectOutput(shardDir.resolve("shard-" + shard.m_index + ".log").toFile());
+        return builder.start();
+    }
+
+    /** Connects to the shard once it is serving, selects its groups, and keeps what it sends back. */
+    private static void collect(Shard shard, int port) {
+        Set<String> groups = new HashSet<String>(shard.m_groups);
+        long deadline = System.nanoTime() + CONNECT_TIMEOUT_NANOS;
+        try {
+            FakeClient client = null;
+            while (client == null) {
+                try {
+                    client = new FakeClient("localhost", port);
+                } catch (ConnectException e) {
+                    if (!shard.m_process.isAlive() || System.nanoTime() > deadline) {
+                        throw new IOException("Never started serving on port " + port, e);
+                    }
+                    shard.m_process.waitFor(100, TimeUnit.MILLISECONDS);
+                }
+            }
+            try (FakeClient connected = client) {
+                connected.withCapabilities(ClientSession.TIMING_CAPABILITY).withSelection(offered -> {
+                    boolean[] selected = new boolean[offered.length];
+                    for (int i = 0; i < offered.length; i++) {
+                        selected[i] = groups.contains(offered[i]);
+                    }
+                    return selected;
+                });
+                shard.m_report = connected.runSession();
+            }
+        } catch (IOException | RuntimeException | InterruptedException e) {
+            shard.m_error = e;
+        }
+    }
+
+    /**
+     * Puts the results of every shard together, with groups in the order they were queued no matter
+     * which shard finished first. Each shard's session summary is kept, named after its shard.
+     */
+    private static TestResultsStore.Snapshot merge(List<TestGroup> groups, List<Shard> shards, long elapsedNanos) {
+        TestResultsStore merged = new TestResultsStore();
+        for (TestGroup group : groups) {
+            merged.addGroup(group.getName());
+        }
+        merged.addGroup(TestManager.SESSION_SUMMARY_GROUP);
+
+        for (Shard shard : shards) {
+            if (shard.m_report == null) {
+                continue;
+            }
+            for (FakeClient.Result received : shard.m_report.m_results) {
+                TestResults result = new TestResults(Message.successOf(received.m_status), received.m_message);
+                result.setTimingFromSummary(received.m_timing);
+                boolean summary = received.m_group.equals(TestManager.SESSION_SUMMARY_GROUP);
+                merged.put(received.m_group, summary ? "Shard " + shard.m_index + " " + received.m_name : received.m_name, result);
+            }
+        }
+        merged.put(TestManager.SESSION_SUMMARY_GROUP, "Sharding", new TestResults(TestSuccess.SUCCESS, String.format(
+            "Ran %d groups in %d shards in %.2f s", groups.size(), shards.size(), elapsedNanos / 1E9)));
+        return merged.snapshot();
+    }
+}
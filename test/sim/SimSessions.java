@@ -0,0 +1,65 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.test.sim;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+
+/** What the {@link HeadlessRunner} and {@link ShardCoordinator} both do to set up a simulated session. */
+class SimSessions {
+    private SimSessions() {}
+
+    /**
+     * Reads the properties file named by the first argument, or {@value HeadlessRunner#DEFAULT_CONFIG_FILE}.
+     *
+     * @return The configuration, which is empty if there is no such file
+     */
+    static Properties loadConfig(String[] args) throws IOException {
+        Path configFile = Path.of(args.length > 0 ? args[0] : HeadlessRunner.DEFAULT_CONFIG_FILE);
+        Properties config = new Properties();
+        if (Files.exists(configFile)) {
+            try (Reader reader = Files.newBufferedReader(configFile, StandardCharsets.UTF_8)) {
+                config.load(reader);
+            }
+        } else {
+            System.out.println("No " + configFile + ", running every test group");
+        }
+        return config;
+    }
+
+    /** Starts the simulated HAL with an attached driver station, enabled in test mode. */
+    static void startTestMode() {
+        if (!HAL.initialize(500, 0)) {
+            throw new IllegalStateException("Could not start the simulated HAL");
+        }
+        DriverStationSim.setDsAttached(true);
+        DriverStationSim.setAutonomous(false);
+        DriverStationSim.setTest(true);
+        DriverStationSim.setEnabled(true);
+        DriverStationSim.notifyNewData();
+    }
+
+    /** @return The names in the {@code groups} property, or null to run every group */
+    static Set<String> readGroups(Properties config) {
+        String groups = config.getProperty("groups", "").trim();
+        if (groups.isEmpty()) {
+            return null;
+        }
+        Set<String> out = new HashSet<String>();
+        for (String group : groups.split(",")) {
+            out.add(group.trim());
+        }
+        return out;
+    }
+}